@@ -22,6 +22,9 @@ import com.hp.hpl.jena.rdf.model.Statement;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.writer.WriterStreamRDFBlocks;
 import com.hp.hpl.jena.sdb.SDBFactory;
 import com.hp.hpl.jena.sdb.Store;
 import com.hp.hpl.jena.sdb.StoreDesc;
@@ -43,6 +46,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Properties;
@@ -57,6 +61,10 @@ public class ApplicationStores {
     private StoreDesc  contentStoreDesc;
     private RDFFormat outputFormat;
 
+    private long pageSize = DEFAULT_PAGE_SIZE;
+    private boolean keysetPaging = true;
+    private long sortThreshold = DEFAULT_SORT_THRESHOLD;
+
     private boolean configured = false;
 
     public ApplicationStores(String homeDir, RDFFormat outputFormat) {
@@ -171,6 +179,18 @@ public class ApplicationStores {
         }
     }
 
+    public void setPageSize(long pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public void setKeysetPaging(boolean keysetPaging) {
+        this.keysetPaging = keysetPaging;
+    }
+
+    public void setSortThreshold(long sortThreshold) {
+        this.sortThreshold = sortThreshold;
+    }
+
     public void readConfiguration(File input) {
         if (configurationDataset != null) {
             try {
@@ -219,7 +239,7 @@ public class ApplicationStores {
         if (configurationDataset != null) {
             try {
                 OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(output, false));
-                if (outputFormat.equals(RDFFormat.NQ) || outputFormat.equals(RDFFormat.TRIG_BLOCKS)) {
+                if (isQuadFormat(outputFormat)) {
                     // for quad formats, write the dataset
                     RDFDataMgr.write(outputStream, configurationDataset, outputFormat);
                 } else {
@@ -241,6 +261,7 @@ public class ApplicationStores {
         if (contentDataset != null) {
             try {
                 OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(output, false));
+                File directory = output.getAbsoluteFile().getParentFile();
                 try {
                     if (LayoutType.LayoutTripleNodesHash.equals(contentStoreDesc.getLayout()) ||
                         LayoutType.LayoutTripleNodesIndex.equals(contentStoreDesc.getLayout())) {
@@ -248,22 +269,42 @@ public class ApplicationStores {
                                 DatabaseType.PostgreSQL.equals(contentStoreDesc.getDbType())) {
 
                             long offset = 0;
-                            long limit  = 10000;
+                            long limit  = pageSize;
 
                             Dataset blankQuads = DatasetFactory.createMem();
 
-                            while (writeContentSQL(outputStream, blankQuads, offset, limit)) {
-                                offset += limit;
-                            }
-
-                            if (blankQuads.asDatasetGraph().size() > 0) {
-                                writeRDF(outputStream, blankQuads, outputFormat);
+                            // For triple formats, the triples of every page are sorted together on disk, so that
+                            // a triple in several graphs is written once
+                            TripleSorter triples = isQuadFormat(outputFormat) ? null : new TripleSorter(directory, sortThreshold);
+                            try {
+                                if (keysetPaging) {
+                                    // Seek past the last key of the previous page, so that each page is a range scan
+                                    // of the Quads primary key rather than a sort and skip of all preceding rows
+                                    QuadKey lastKey = writeContentSQL(outputStream, blankQuads, triples, null, 0, limit);
+                                    while (lastKey != null) {
+                                        lastKey = writeContentSQL(outputStream, blankQuads, triples, lastKey, 0, limit);
+                                    }
+                                } else {
+                                    while (writeContentSQL(outputStream, blankQuads, triples, null, offset, limit) != null) {
+                                        offset += limit;
+                                    }
+                                }
+
+                                if (triples != null) {
+                                    writeTriples(outputStream, triples, outputFormat);
+                                } else if (blankQuads.asDatasetGraph().size() > 0) {
+                                    RDFDataMgr.write(outputStream, blankQuads, outputFormat);
+                                }
+                            } finally {
+                                if (triples != null) {
+                                    triples.close();
+                                }
                             }
                         } else {
-                            writeRDF(outputStream, contentDataset, outputFormat);
+                            writeRDF(outputStream, contentDataset, outputFormat, directory);
                         }
                     } else {
-                        writeRDF(outputStream, contentDataset, outputFormat);
+                        writeRDF(outputStream, contentDataset, outputFormat, directory);
                     }
                 } finally {
                     outputStream.close();
@@ -276,40 +317,27 @@ public class ApplicationStores {
         }
     }
 
-    public Model createUnionModel(Dataset d) {
-        Model m = ModelFactory.createDefaultModel();
-        try{
-            java.sql.Statement stmt = contentConnection.createStatement();
-            ResultSet rs = stmt.executeQuery("SELECT N4.lex AS g_name FROM (SELECT g from Quads GROUP BY g " +
-                    "ORDER BY g) Q LEFT OUTER JOIN Nodes AS N4 ON (Q.g = N4.hash)");
-            try{
-                while(rs.next()) {
-                    System.out.println("Union model " + rs.getString("g_name"));
-                    m = m.union(d.getNamedModel(rs.getString("g_name")));
-                }
-            }
-            finally {
-                rs.close();
-            }
-        }
-        catch (SQLException sqle) {
-            throw new RuntimeException("Unable to construct union model", sqle);
-        }
-        return m;
-    }
-
-    private boolean writeContentSQL(OutputStream outputStream, Dataset blankQuads, long offset, long limit) {
+    /**
+     * Write a page of the Quads table - either the page following the key <code>after</code> (keyset paging),
+     * or the page starting at <code>offset</code>.
+     *
+     * @param triples collects the triples of the page instead, for triple formats, or null for quad formats
+     * @return the key of the last quad in the page, or null if the page was empty
+     */
+    private QuadKey writeContentSQL(OutputStream outputStream, Dataset blankQuads, TripleSorter triples, QuadKey after, long offset, long limit) {
         Dataset quads = DatasetFactory.createMem();
+        QuadKey lastKey = null;
 
         try {
-            java.sql.Statement stmt = contentConnection.createStatement();
-            ResultSet rs = stmt.executeQuery("SELECT \n" +
+            PreparedStatement stmt = contentConnection.prepareStatement("SELECT \n" +
+                    "Q.g AS g_key, Q.s AS s_key, Q.p AS p_key, Q.o AS o_key,\n" +
                     "N1.lex AS s_lex, N1.lang AS s_lang, N1.datatype AS s_datatype, N1.type AS s_type,\n" +
                     "N2.lex AS p_lex, N2.lang AS p_lang, N2.datatype AS p_datatype, N2.type AS p_type,\n" +
                     "N3.lex AS o_lex, N3.lang AS o_lang, N3.datatype AS o_datatype, N3.type AS o_type,\n" +
                     "N4.lex AS g_lex, N4.lang AS g_lang, N4.datatype AS g_datatype, N4.type AS g_type \n" +
                     "FROM\n" +
                     "(SELECT g,s,p,o FROM Quads" +
+                    (after != null ? " WHERE (g,s,p,o) > (?,?,?,?)" : "") +
                     " ORDER BY g,s,p,o " +
                     (limit > 0 ? "LIMIT " + limit : "") +
                     (offset > 0 ? " OFFSET " + offset : "") + ") Q\n" +
@@ -326,9 +354,19 @@ public class ApplicationStores {
                                     "LEFT OUTER JOIN Nodes AS N3 ON ( Q.o = N3.id ) " +
                                     "LEFT OUTER JOIN Nodes AS N4 ON ( Q.g = N4.id ) "
                             )
-                    )
+                    ) +
+                    "ORDER BY Q.g, Q.s, Q.p, Q.o"
             );
 
+            if (after != null) {
+                stmt.setLong(1, after.g);
+                stmt.setLong(2, after.s);
+                stmt.setLong(3, after.p);
+                stmt.setLong(4, after.o);
+            }
+
+            ResultSet rs = stmt.executeQuery();
+
             try {
                 while (rs.next()) {
                     Node subjectNode = makeNode(
@@ -355,7 +393,9 @@ public class ApplicationStores {
                             rs.getString("g_lang"),
                             ValueType.lookup(rs.getInt("g_type")));
 
-                    if (subjectNode.isBlank() || predicateNode.isBlank() || objectNode.isBlank()) {
+                    if (triples != null) {
+                        triples.triple(Triple.create(subjectNode, predicateNode, objectNode));
+                    } else if (subjectNode.isBlank() || predicateNode.isBlank() || objectNode.isBlank()) {
                         blankQuads.asDatasetGraph().add(Quad.create(
                                 graphNode,
                                 Triple.create(subjectNode, predicateNode, objectNode)
@@ -366,21 +406,22 @@ public class ApplicationStores {
                                 Triple.create(subjectNode, predicateNode, objectNode)
                         ));
                     }
+
+                    lastKey = new QuadKey(rs.getLong("g_key"), rs.getLong("s_key"), rs.getLong("p_key"), rs.getLong("o_key"));
                 }
             } finally {
                 rs.close();
+                stmt.close();
             }
 
             if (quads.asDatasetGraph().size() > 0) {
-                writeRDF(outputStream, quads, outputFormat);
-                return true;
+                RDFDataMgr.write(outputStream, quads, outputFormat);
             }
         } catch (SQLException sqle) {
             throw new RuntimeException("Unable to retrieve triples", sqle);
-        } finally {
         }
 
-        return false;
+        return lastKey;
     }
 
     // Copied from Jena SQLBridge2
@@ -408,17 +449,47 @@ public class ApplicationStores {
         }
     }
 
-    private void writeRDF(OutputStream outputStream, Dataset dataset, RDFFormat outputFormat){
-        if (outputFormat.equals(RDFFormat.NQ) || outputFormat.equals(RDFFormat.TRIG_BLOCKS)) {
+    /**
+     * @param directory where the triples are sorted, for triple formats
+     */
+    private void writeRDF(OutputStream outputStream, Dataset dataset, RDFFormat outputFormat, File directory){
+        if (isQuadFormat(outputFormat)) {
             // for quad formats, write the dataset
             RDFDataMgr.write(outputStream, dataset, outputFormat);
          } else {
-            // for triple formats, create a union model and write it
-            Model m = createUnionModel(dataset);
-            RDFDataMgr.write(outputStream, m, outputFormat);
+            // for triple formats, write each distinct triple of the named graphs once
+            TripleSorter triples = new TripleSorter(directory, sortThreshold);
+            try {
+                StreamRDFLib.quadsToStream(triples, dataset.asDatasetGraph().findNG(null, null, null, null));
+                writeTriples(outputStream, triples, outputFormat);
+            } finally {
+                triples.close();
+            }
          }
     }
 
+    /**
+     * Write the distinct triples of <code>triples</code>. N-Triples and Turtle are streamed; RDF/XML can't be, so
+     * the triples are collected into a model first.
+     */
+    private static void writeTriples(OutputStream outputStream, TripleSorter triples, RDFFormat outputFormat) {
+        if (outputFormat.equals(RDFFormat.NTRIPLES) || outputFormat.equals(RDFFormat.TURTLE)) {
+            StreamRDF stream = outputFormat.equals(RDFFormat.NTRIPLES) ?
+                    StreamRDFLib.writer(outputStream) : new WriterStreamRDFBlocks(outputStream);
+            stream.start();
+            triples.replay(stream);
+            stream.finish();
+        } else {
+            Model m = ModelFactory.createDefaultModel();
+            triples.replay(StreamRDFLib.graph(m.getGraph()));
+            RDFDataMgr.write(outputStream, m, outputFormat);
+        }
+    }
+
+    private static boolean isQuadFormat(RDFFormat outputFormat) {
+        return outputFormat.equals(RDFFormat.NQ) || outputFormat.equals(RDFFormat.TRIG_BLOCKS);
+    }
+
     public boolean isEmpty() {
         boolean empty = true;
 
@@ -541,6 +612,9 @@ public class ApplicationStores {
         }
     }
 
+    static final long DEFAULT_PAGE_SIZE = 10000;
+    static final long DEFAULT_SORT_THRESHOLD = 1000000;
+
     static final String DEFAULT_DRIVER_CLASS = "com.mysql.jdbc.Driver";
     static final String DEFAULT_LAYOUT = "layout2/hash";
     static final String DEFAULT_TYPE = "MySQL";
@@ -28,6 +28,9 @@ public class JenaCli {
         }
 
         ApplicationStores applicationStores = new ApplicationStores(options.homeDir, options.outputFormat);
+        applicationStores.setPageSize(options.pageSize);
+        applicationStores.setKeysetPaging(options.keysetPaging);
+        applicationStores.setSortThreshold(options.sortThreshold);
         try {
             File dumpDir = Utils.resolveFile(options.homeDir, "dumps");
             if (dumpDir.exists()) {
@@ -113,6 +116,27 @@ public class JenaCli {
                     options.importMode = true;
                 }
 
+                if ("--page-size".equalsIgnoreCase(arg[i])) {
+                    if (i < arg.length - 1) {
+                        i++;
+                        options.pageSizeString = arg[i];
+                    }
+                }
+
+                if ("--paging".equalsIgnoreCase(arg[i])) {
+                    if (i < arg.length - 1) {
+                        i++;
+                        options.pagingString = arg[i];
+                    }
+                }
+
+                if ("--sort-threshold".equalsIgnoreCase(arg[i])) {
+                    if (i < arg.length - 1) {
+                        i++;
+                        options.sortThresholdString = arg[i];
+                    }
+                }
+
                 if ("-o".equalsIgnoreCase(arg[i]) ||
                        "--output".equalsIgnoreCase(arg[i])
                     ) {
@@ -178,6 +202,12 @@ public class JenaCli {
         public boolean force = false;
         public String outputString = "trig";
         public RDFFormat outputFormat = RDFFormat.TRIG_BLOCKS;
+        public String pageSizeString = String.valueOf(ApplicationStores.DEFAULT_PAGE_SIZE);
+        public long pageSize = ApplicationStores.DEFAULT_PAGE_SIZE;
+        public String pagingString = "keyset";
+        public boolean keysetPaging = true;
+        public String sortThresholdString = String.valueOf(ApplicationStores.DEFAULT_SORT_THRESHOLD);
+        public long sortThreshold = ApplicationStores.DEFAULT_SORT_THRESHOLD;
 
         private boolean isValid() {
             if (StringUtils.isEmpty(homeDir)) {
@@ -198,6 +228,34 @@ public class JenaCli {
                  return false;
              }
 
+            try {
+                pageSize = Long.parseLong(pageSizeString);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+
+            if (pageSize < 1) {
+                return false;
+            }
+
+            try {
+                sortThreshold = Long.parseLong(sortThresholdString);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+
+            if (sortThreshold < 1) {
+                return false;
+            }
+
+            if ("keyset".equals(pagingString)) {
+                keysetPaging = true;
+            } else if ("offset".equals(pagingString)) {
+                keysetPaging = false;
+            } else {
+                return false;
+            }
+
             if (importMode == exportMode) {
                 return false;
             }
@@ -0,0 +1,102 @@
+package org.vivoweb.tools;
+
+import com.hp.hpl.jena.datatypes.TypeMapper;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.rdf.model.AnonId;
+import org.apache.jena.riot.out.NodeFmtLib;
+import org.apache.jena.riot.tokens.Token;
+import org.apache.jena.riot.tokens.TokenType;
+import org.apache.jena.riot.tokens.TokenizerFactory;
+
+/**
+ * Nodes as N-Triples terms, for lines of triples and quads that are written to a file and read back, such as sort
+ * runs, and that have to read back as exactly the nodes that were written.
+ *
+ * Characters that N-Triples doesn't allow in an IRI are written as Unicode escapes, so that an IRI a store took, such
+ * as one with a space in it, can still be read. Datatypes are written in full, and blank node labels are written
+ * encoded and decoded again when read. Nodes are rebuilt as they are, without the checks a parser would make.
+ */
+public class NodeFormat {
+    public static String str(Node node) {
+        if (node.isURI()) {
+            return str(node.getURI());
+        } else if (node.isLiteral()) {
+            // Quoted and escaped as a simple literal, with the language or datatype written out in full
+            String lexicalForm = NodeFmtLib.str(NodeFactory.createLiteral(node.getLiteralLexicalForm()));
+            String lang = node.getLiteralLanguage();
+            if (lang != null && !lang.isEmpty()) {
+                return lexicalForm + "@" + lang;
+            }
+
+            String datatype = node.getLiteralDatatypeURI();
+            if (datatype == null) {
+                return lexicalForm;
+            }
+            return lexicalForm + "^^" + str(datatype);
+        }
+
+        return NodeFmtLib.str(node);
+    }
+
+    private static String str(String uri) {
+        StringBuilder str = new StringBuilder(uri.length() + 2).append('<');
+        for (int i = 0; i < uri.length(); i++) {
+            char ch = uri.charAt(i);
+            if (ch <= ' ' || IRI_ESCAPED.indexOf(ch) >= 0) {
+                str.append(String.format("\\u%04X", (int) ch));
+            } else {
+                str.append(ch);
+            }
+        }
+        return str.append('>').toString();
+    }
+
+    /**
+     * The node written by {@link #str(Node)} as <code>term</code>. This version of Jena's tokenizer won't take an
+     * escaped '&lt;' in an IRI, so IRIs and blank nodes are read here, and only literals by the tokenizer.
+     */
+    public static Node parse(String term) {
+        if (term.startsWith("<") && term.endsWith(">")) {
+            return NodeFactory.createURI(unescape(term.substring(1, term.length() - 1)));
+        } else if (term.startsWith("_:")) {
+            return NodeFactory.createAnon(AnonId.create(NodeFmtLib.decodeBNodeLabel(term.substring(2))));
+        }
+
+        Token token = TokenizerFactory.makeTokenizerString(term).next();
+        if (token.hasType(TokenType.LITERAL_LANG)) {
+            return NodeFactory.createLiteral(token.getImage(), token.getImage2(), false);
+        } else if (token.hasType(TokenType.LITERAL_DT)) {
+            return NodeFactory.createLiteral(token.getImage(),
+                    TypeMapper.getInstance().getSafeTypeByName(token.getSubToken2().getImage()));
+        } else if (token.isString()) {
+            return NodeFactory.createLiteral(token.getImage());
+        }
+
+        return token.asNode();
+    }
+
+    /**
+     * Every backslash in an IRI written by {@link #str(Node)} starts a Unicode escape
+     */
+    private static String unescape(String iri) {
+        if (iri.indexOf('\\') < 0) {
+            return iri;
+        }
+
+        StringBuilder unescaped = new StringBuilder(iri.length());
+        for (int i = 0; i < iri.length(); i++) {
+            char ch = iri.charAt(i);
+            if (ch == '\\' && i + 5 < iri.length() && iri.charAt(i + 1) == 'u') {
+                unescaped.append((char) Integer.parseInt(iri.substring(i + 2, i + 6), 16));
+                i += 5;
+            } else {
+                unescaped.append(ch);
+            }
+        }
+        return unescaped.toString();
+    }
+
+    // Characters that N-Triples doesn't allow in an IRI, besides controls and space
+    private static final String IRI_ESCAPED = "<>\"{}|^`\\";
+}
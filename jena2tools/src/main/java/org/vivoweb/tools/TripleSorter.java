@@ -0,0 +1,222 @@
+package org.vivoweb.tools;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.Quad;
+import org.apache.jena.atlas.lib.Tuple;
+import org.apache.jena.riot.system.StreamRDF;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Collects triples, dropping the graph of quads, and replays each distinct triple once, keeping at most
+ * <code>threshold</code> of them in memory.
+ *
+ * Each triple is held as its N-Triples line, as written by {@link NodeFormat}. When the threshold is reached, the
+ * lines are sorted and written to a temporary file as a sorted run. Replaying merges the runs, so duplicates from any
+ * of them are next to each other and are dropped by comparing each line with the one before. Triples are replayed in
+ * the order of their lines, which keeps the triples of a subject together.
+ */
+public class TripleSorter implements StreamRDF, AutoCloseable {
+    private final File directory;
+    private final long threshold;
+
+    private List<String> lines = new ArrayList<>();
+    private final List<File> runs = new ArrayList<>();
+
+    public TripleSorter(File directory, long threshold) {
+        this.directory = directory;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void triple(Triple triple) {
+        lines.add(NodeFormat.str(triple.getSubject()) + " " + NodeFormat.str(triple.getPredicate()) + " " +
+                NodeFormat.str(triple.getObject()));
+        if (lines.size() >= threshold) {
+            spill();
+        }
+    }
+
+    @Override
+    public void quad(Quad quad) {
+        triple(quad.asTriple());
+    }
+
+    @Override
+    public void tuple(Tuple<Node> tuple) {
+    }
+
+    @Override
+    public void base(String base) {
+    }
+
+    @Override
+    public void prefix(String prefix, String iri) {
+    }
+
+    @Override
+    public void finish() {
+    }
+
+    /**
+     * Send each distinct triple to <code>destination</code>. Only the triples are sent - it is up to the caller to
+     * start and finish the destination.
+     *
+     * @return the number of distinct triples
+     */
+    public long replay(StreamRDF destination) {
+        if (runs.isEmpty()) {
+            Collections.sort(lines);
+            long distinct = 0;
+            String previous = null;
+            for (String line : lines) {
+                if (!line.equals(previous)) {
+                    destination.triple(parse(line));
+                    previous = line;
+                    distinct++;
+                }
+            }
+            return distinct;
+        }
+
+        if (!lines.isEmpty()) {
+            spill();
+        }
+
+        PriorityQueue<Run> merge = new PriorityQueue<>();
+        try {
+            for (File file : runs) {
+                Run run = new Run(file);
+                if (run.line != null) {
+                    merge.add(run);
+                } else {
+                    run.close();
+                }
+            }
+
+            long distinct = 0;
+            String previous = null;
+            while (!merge.isEmpty()) {
+                Run run = merge.poll();
+                if (!run.line.equals(previous)) {
+                    destination.triple(parse(run.line));
+                    previous = run.line;
+                    distinct++;
+                }
+
+                if (run.next()) {
+                    merge.add(run);
+                } else {
+                    run.close();
+                }
+            }
+            return distinct;
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to merge sorted triples", e);
+        } finally {
+            for (Run run : merge) {
+                run.close();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (File run : runs) {
+            if (!run.delete()) {
+                run.deleteOnExit();
+            }
+        }
+        runs.clear();
+        lines.clear();
+    }
+
+    /**
+     * Write the lines held in memory to a new run, sorted and without duplicates
+     */
+    private void spill() {
+        Collections.sort(lines);
+
+        File run;
+        try {
+            run = File.createTempFile("triples-", ".nt", directory);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to create sort file in " + directory.getAbsolutePath(), e);
+        }
+        runs.add(run);
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(run), StandardCharsets.UTF_8))) {
+            String previous = null;
+            for (String line : lines) {
+                if (!line.equals(previous)) {
+                    writer.write(line);
+                    writer.write('\n');
+                    previous = line;
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write sorted triples to " + run.getAbsolutePath(), e);
+        }
+
+        lines = new ArrayList<>();
+    }
+
+    private static Triple parse(String line) {
+        // IRIs and blank nodes are written without spaces, so only a literal object may have any
+        int subjectEnd = line.indexOf(' ');
+        int predicateEnd = line.indexOf(' ', subjectEnd + 1);
+        Node subject = NodeFormat.parse(line.substring(0, subjectEnd));
+        Node predicate = NodeFormat.parse(line.substring(subjectEnd + 1, predicateEnd));
+        Node object = NodeFormat.parse(line.substring(predicateEnd + 1));
+        return new Triple(subject, predicate, object);
+    }
+
+    /**
+     * A sorted run being merged, positioned on its current line
+     */
+    private static class Run implements Comparable<Run> {
+        private final BufferedReader reader;
+        private String line;
+
+        Run(File file) throws IOException {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+            line = reader.readLine();
+        }
+
+        boolean next() throws IOException {
+            line = reader.readLine();
+            return line != null;
+        }
+
+        void close() {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // Only closing a temporary file, which is about to be deleted
+            }
+        }
+
+        @Override
+        public int compareTo(Run other) {
+            return line.compareTo(other.line);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.vivoweb.tools;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.AnonId;
+import com.hp.hpl.jena.sparql.core.Quad;
+import com.hp.hpl.jena.sparql.graph.GraphFactory;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TripleSorterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replaysEachDistinctTripleOnce() throws Exception {
+        Node subject = NodeFactory.createURI("http://example.org/s");
+        Node predicate = NodeFactory.createURI("http://example.org/p");
+        Node graph = NodeFactory.createURI("http://example.org/g");
+
+        // A threshold of 2 spills the triples to several sorted runs
+        try (TripleSorter sorter = new TripleSorter(folder.getRoot(), 2)) {
+            for (int i = 0; i < 5; i++) {
+                sorter.triple(new Triple(subject, predicate, NodeFactory.createLiteral("v" + (i % 3))));
+                sorter.quad(new Quad(graph, subject, predicate, NodeFactory.createLiteral("v" + (i % 3))));
+            }
+
+            Graph replayed = GraphFactory.createDefaultGraph();
+            assertEquals(3, sorter.replay(StreamRDFLib.graph(replayed)));
+            assertEquals(3, replayed.size());
+        }
+    }
+
+    @Test
+    public void replaysNodesExactly() throws Exception {
+        Triple[] triples = {
+                // Not a valid IRI, but one a store can hold
+                new Triple(NodeFactory.createURI("http://example.org/a b<c>\\d"),
+                        NodeFactory.createURI("http://example.org/p"),
+                        NodeFactory.createURI("http://example.org/{x}|^`\"")),
+                // Blank node labels as SDB and TDB give them
+                new Triple(NodeFactory.createAnon(AnonId.create("a0p0")),
+                        NodeFactory.createURI("http://example.org/p"),
+                        NodeFactory.createAnon(AnonId.create("6c3d1e2f-0a9b:x y"))),
+                new Triple(NodeFactory.createURI("http://example.org/s"),
+                        NodeFactory.createURI("http://example.org/p"),
+                        NodeFactory.createLiteral("two\nlines \"quoted\"", "en-GB", false)),
+                new Triple(NodeFactory.createURI("http://example.org/s"),
+                        NodeFactory.createURI("http://example.org/p"),
+                        NodeFactory.createLiteral("not a number", XSDDatatype.XSDint))
+        };
+
+        for (long threshold : new long[] { 2, 100 }) {
+            try (TripleSorter sorter = new TripleSorter(folder.getRoot(), threshold)) {
+                for (Triple triple : triples) {
+                    sorter.triple(triple);
+                }
+
+                Graph replayed = GraphFactory.createDefaultGraph();
+                assertEquals(triples.length, sorter.replay(StreamRDFLib.graph(replayed)));
+                for (Triple triple : triples) {
+                    assertTrue("Missing " + triple, replayed.contains(triple));
+                }
+            }
+        }
+    }
+}
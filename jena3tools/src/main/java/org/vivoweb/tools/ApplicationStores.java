@@ -1,12 +1,8 @@
 package org.vivoweb.tools;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.jena.datatypes.RDFDatatype;
-import org.apache.jena.datatypes.TypeMapper;
-import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.Node;
-import org.apache.jena.graph.NodeFactory;
-import org.apache.jena.graph.Triple;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.query.ReadWrite;
@@ -19,35 +15,53 @@ import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.RDFParserBuilder;
+import org.apache.jena.riot.lang.LabelToNode;
+import org.apache.jena.riot.system.StreamOps;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.system.StreamRDFWriter;
 import org.apache.jena.sdb.SDBFactory;
 import org.apache.jena.sdb.Store;
 import org.apache.jena.sdb.StoreDesc;
-import org.apache.jena.sdb.layout2.ValueType;
 import org.apache.jena.sdb.sql.SDBConnection;
 import org.apache.jena.sdb.sql.SDBExceptionSQL;
 import org.apache.jena.sdb.store.DatabaseType;
 import org.apache.jena.sdb.store.LayoutType;
 import org.apache.jena.sdb.util.StoreUtils;
+import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.graph.GraphFactory;
 import org.apache.jena.tdb.TDB;
 import org.apache.jena.tdb.TDBFactory;
+import org.apache.jena.tdb.TDBLoader;
+import org.apache.jena.tdb.store.DatasetGraphTDB;
+import org.apache.jena.tdb.sys.TDBInternal;
 import org.apache.jena.vocabulary.RDF;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 public class ApplicationStores {
     private final Model applicationModel;
@@ -57,12 +71,42 @@ public class ApplicationStores {
 
     private Connection contentConnection;
     private StoreDesc  contentStoreDesc;
+    private Store      contentStore;
+    private Properties contentProperties;
 
     private RDFFormat outputFormat;
 
+    private long pageSize = DEFAULT_PAGE_SIZE;
+    private boolean keysetPaging = true;
+    private boolean streaming = false;
+    private long spillThreshold = DEFAULT_SPILL_THRESHOLD;
+    private long sortThreshold = DEFAULT_SORT_THRESHOLD;
+    private int threads = 1;
+    private boolean partitionByGraph = false;
+    private boolean partitionFiles = false;
+    private int nodeCacheSize = 0;
+    private GraphFilter graphFilter = GraphFilter.all();
+    private int internSize = DEFAULT_INTERN_SIZE;
+    private long batchSize = DEFAULT_BATCH_SIZE;
+    private long shardQuads = 0;
+    private long shardBytes = 0;
+    private boolean resume = false;
+    private long checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    private long progressInterval = DEFAULT_PROGRESS_INTERVAL;
+
+    // Read by the metrics thread while stages are added
+    private final List<Progress> stages = new CopyOnWriteArrayList<>();
+    private Metrics metrics;
+    private long connectMillis;
+
+    private SDBNodeCache nodeCache;
+    private List<Long> sqlGraphs;
+    private NodeInterner interner;
+
     private boolean configured = false;
 
     public ApplicationStores(String homeDir, RDFFormat outputFormat) {
+        long started = System.currentTimeMillis();
 
         File config = Utils.resolveFile(homeDir, "config/applicationSetup.n3");
         File runtimeProperties = Utils.resolveFile(homeDir, "config/runtime.properties");
@@ -101,6 +145,7 @@ public class ApplicationStores {
                     throw new RuntimeException("Unable to load properties", e);
                 }
 
+                contentProperties = props;
                 contentConnection = makeConnection(props);
                 contentStoreDesc  = makeStoreDesc(props);
                 Store store = SDBFactory.connectStore(contentConnection, contentStoreDesc);
@@ -113,6 +158,7 @@ public class ApplicationStores {
                     store.getTableFormatter().truncate();
                 }
 
+                contentStore = store;
                 contentDataset = SDBFactory.connectDataset(store);
                 if (contentDataset == null) {
                     throw new RuntimeException("Unable to connect to SDB content dataset");
@@ -168,6 +214,7 @@ public class ApplicationStores {
                 throw new RuntimeException("No compatible 'configurationSource' found!");
             }
 
+            connectMillis = System.currentTimeMillis() - started;
             configured = true;
         } catch (SQLException e) {
             throw new RuntimeException("SQL Exception", e);
@@ -178,13 +225,142 @@ public class ApplicationStores {
         }
     }
 
+    public void setPageSize(long pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public void setKeysetPaging(boolean keysetPaging) {
+        this.keysetPaging = keysetPaging;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public void setSpillThreshold(long spillThreshold) {
+        this.spillThreshold = spillThreshold;
+    }
+
+    public void setSortThreshold(long sortThreshold) {
+        this.sortThreshold = sortThreshold;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public void setPartitionByGraph(boolean partitionByGraph) {
+        this.partitionByGraph = partitionByGraph;
+    }
+
+    /**
+     * Import and export only the graphs that <code>graphFilter</code> selects
+     */
+    public void setGraphFilter(GraphFilter graphFilter) {
+        this.graphFilter = graphFilter;
+    }
+
+    public void setPartitionFiles(boolean partitionFiles) {
+        this.partitionFiles = partitionFiles;
+    }
+
+    public void setNodeCacheSize(int nodeCacheSize) {
+        this.nodeCacheSize = nodeCacheSize;
+    }
+
+    public void setInternSize(int internSize) {
+        this.internSize = internSize;
+    }
+
+    public void setBatchSize(long batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Write content as numbered shards, starting a new one after this many quads, or 0 for no limit
+     */
+    public void setShardQuads(long shardQuads) {
+        this.shardQuads = shardQuads;
+    }
+
+    /**
+     * Write content as numbered shards, starting a new one after this many bytes, or 0 for no limit
+     */
+    public void setShardBytes(long shardBytes) {
+        this.shardBytes = shardBytes;
+    }
+
+    /**
+     * Continue a sharded content export from its last checkpoint, or an SDB import from its journal
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    /**
+     * Seconds between the checkpoints of a resumable sharded export
+     */
+    public void setCheckpointInterval(long checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Seconds between progress reports during each stage of an import or export, or 0 for none
+     */
+    public void setProgressInterval(long progressInterval) {
+        this.progressInterval = progressInterval;
+    }
+
+    /**
+     * Write metrics for the run to <code>file</code>, in the Prometheus text format or as JSON. The file is rewritten
+     * at the progress interval, and by {@link #writeMetrics(boolean)} at the end of the run.
+     */
+    public void setMetricsFile(File file, boolean prometheus) {
+        metrics = new Metrics(file, prometheus, stages);
+        metrics.addTime("connect", connectMillis);
+        metrics.start(progressInterval * 1000);
+    }
+
+    /**
+     * Write the metrics a final time at the end of the run, with whether it succeeded
+     */
+    public void writeMetrics(boolean succeeded) {
+        if (metrics != null) {
+            metrics.setStatus(succeeded ? Metrics.STATUS_SUCCEEDED : Metrics.STATUS_FAILED);
+            try {
+                metrics.stop();
+            } catch (IOException e) {
+                if (succeeded) {
+                    throw new RuntimeException("Unable to write metrics", e);
+                }
+
+                // Rather than hide the error that failed the run
+                System.err.println("Unable to write metrics: " + e.getMessage());
+            }
+        }
+    }
+
     public void readConfiguration(File input) {
         if (configurationDataset != null) {
+            Progress progress = startStage("Configuration import");
             try {
-                InputStream inputStream = new BufferedInputStream(new FileInputStream(input));
+                Lang lang = Utils.detectLang(input);
+
+                if (configurationDataset.asDatasetGraph().isEmpty() && graphFilter.selectsAll() && isBulkLoadable(input)) {
+                    progress.addQuads(bulkLoadTDB(configurationDataset, input));
+                    return;
+                }
+
+                progress.setTotalBytes(input.length());
+                InputStream inputStream = Utils.openInput(input, progress);
                 try {
-                    RDFDataMgr.read(configurationDataset, inputStream, Lang.TRIG);
+                    parse(inputStream, lang, graphFilter.filter(progress.count(StreamRDFLib.dataset(configurationDataset.asDatasetGraph()))));
                     TDB.sync(configurationDataset);
+
+                    if (!graphFilter.selectsAll() && progress.getQuads() == 0) {
+                        System.err.println("Warning: the graphs selected are none of those in the configuration dump, " +
+                                "so no configuration was imported");
+                    }
                 } finally {
                     inputStream.close();
                 }
@@ -192,214 +368,1116 @@ public class ApplicationStores {
                 throw new RuntimeException("Unable to find configuration dump");
             } catch (IOException e) {
                 throw new RuntimeException("Unable to read configuration dump", e);
+            } finally {
+                progress.finish();
             }
         }
     }
 
+    /**
+     * Load a content dump, or the shards listed in a manifest
+     */
     public void readContent(File input) {
         if (contentDataset != null) {
+            Progress progress = startStage("Content import");
             try {
-                InputStream inputStream = new BufferedInputStream(new FileInputStream(input));
+                List<File> inputs;
+                ShardManifest manifest = null;
+                if (ShardManifest.isManifest(input)) {
+                    manifest = ShardManifest.read(input);
+                    manifest.verify();
+                    inputs = manifest.getFiles();
+                } else {
+                    inputs = Collections.singletonList(input);
+                }
+
+                if (inputs.isEmpty()) {
+                    return;
+                }
+
+                Lang lang = Utils.detectLang(inputs.get(0));
+
+                // Line based dumps can be parsed on several threads
+                boolean pipelined = threads > 1 && Utils.isLineBased(lang);
+
+                // SDB imports read in order keep a journal of the quads committed, so that they can be resumed
+                boolean journaled = contentConnection != null && !pipelined;
+                final File journalFile = ImportJournal.fileFor(input);
+
+                long skip = 0;
+                long skippedShardQuads = 0;
+                if (resume) {
+                    if (!journaled) {
+                        throw new RuntimeException("Only an SDB import read on one thread can be resumed");
+                    }
+
+                    // Without a journal, nothing was committed before the import stopped
+                    skip = journalFile.exists() ? ImportJournal.read(journalFile) : 0;
+                    System.out.println(String.format("Resuming content import after %d quads", skip));
+
+                    // Whole shards that have been committed don't need to be read again
+                    if (manifest != null) {
+                        inputs = new ArrayList<>(inputs);
+                        for (ShardManifest.Shard shard : manifest.getShards()) {
+                            if (inputs.size() == 1 || skippedShardQuads + shard.quads > skip) {
+                                break;
+                            }
+                            skippedShardQuads += shard.quads;
+                            inputs.remove(0);
+                        }
+                    }
+                }
+
+                long totalBytes = 0;
+                for (File file : inputs) {
+                    totalBytes += file.length();
+                }
+                progress.setTotalBytes(totalBytes);
+                if (manifest != null) {
+                    progress.setTotalQuads(manifest.getQuads() - skip);
+                }
+
+                // The bulk loader reads every graph, so is only used when all of them are wanted
+                if (!pipelined && contentConnection == null && contentDataset.asDatasetGraph().isEmpty() &&
+                        graphFilter.selectsAll() && isBulkLoadable(inputs, lang)) {
+                    progress.addQuads(bulkLoadTDB(contentDataset, inputs, progress));
+                    return;
+                }
+
+                QuadCounter destination;
+                SDBQuadLoader loader = null;
+                if (contentConnection != null) {
+                    // The bulk loader commits each batch itself
+                    loader = new SDBQuadLoader(contentStore, batchSize);
+                    if (journaled) {
+                        final long committedBefore = skip;
+                        loader.setCommitListener(committed -> {
+                            try {
+                                ImportJournal.write(journalFile, committedBefore + committed);
+                            } catch (IOException e) {
+                                throw new RuntimeException("Unable to write import journal", e);
+                            }
+                        });
+                    }
+                    destination = new QuadCounter(graphFilter.filter(new QuadSkipper(progress.count(loader), skip - skippedShardQuads)));
+                } else {
+                    destination = new QuadCounter(graphFilter.filter(progress.count(StreamRDFLib.dataset(contentDataset.asDatasetGraph()))));
+                }
+
                 try {
-                    if (contentConnection != null) {
-                        contentConnection.setAutoCommit(false);
-                        RDFDataMgr.read(contentDataset, inputStream, Lang.TRIG);
-                        contentConnection.commit();
+                    if (pipelined) {
+                        for (File file : inputs) {
+                            if (!file.exists()) {
+                                throw new FileNotFoundException(file.getAbsolutePath());
+                            }
+                        }
+
+                        NQuadsPipeline pipeline = new NQuadsPipeline(threads);
+                        pipeline.setProgress(progress);
+                        pipeline.load(inputs, lang, destination);
                     } else {
-                        RDFDataMgr.read(contentDataset, inputStream, Lang.TRIG);
-                        TDB.sync(contentDataset);
+                        // Shards are read as one document, so that blank node labels are shared between them. A
+                        // journaled import makes blank nodes from their labels, so that quads loaded again after a
+                        // restart are the same quads, rather than copies with new blank nodes
+                        InputStream inputStream = Utils.openInputs(inputs, progress);
+                        try {
+                            parse(inputStream, lang, journaled ? LabelToNode.createUseLabelEncoded() : null, destination);
+                        } finally {
+                            inputStream.close();
+                        }
                     }
-                } catch (SQLException e) {
-                    throw new RuntimeException("SQL exception", e);
                 } finally {
-                    inputStream.close();
+                    // Releases the bulk loader, even if the import failed part way through a batch
+                    if (loader != null) {
+                        loader.close();
+                    }
+                }
+
+                long commitMillis;
+                if (loader != null) {
+                    commitMillis = loader.getCommitMillis();
+                } else {
+                    long syncStarted = System.currentTimeMillis();
+                    TDB.sync(contentDataset);
+                    commitMillis = System.currentTimeMillis() - syncStarted;
+                }
+                addTime("import_commit", commitMillis);
+                addTime("import_parse", progress.getMillis() - commitMillis);
+
+                if (manifest != null && destination.getCount() + skippedShardQuads != manifest.getQuads()) {
+                    throw new RuntimeException(String.format("Content dump has %d quads, but the manifest lists %d",
+                            destination.getCount() + skippedShardQuads, manifest.getQuads()));
+                }
+
+                if (journalFile.exists() && !journalFile.delete()) {
+                    throw new IOException("Unable to remove import journal " + journalFile.getAbsolutePath());
                 }
             } catch (FileNotFoundException e) {
                 throw new RuntimeException("Unable to find content dump (dir error)");
-            } catch (IOException e) {
+            } catch (IOException | UncheckedIOException e) {
                 throw new RuntimeException("Unable to read content dump", e);
+            } finally {
+                progress.finish();
             }
         }
     }
 
+    /**
+     * Parse a dump straight into <code>destination</code>, without collecting it in memory first.
+     *
+     * N-Triples and N-Quads are parsed a line at a time. Their terms are not checked, as the dumps are written by
+     * RIOT and are already valid, so parsing is limited by reading the tokens.
+     */
+    private static void parse(InputStream inputStream, Lang lang, StreamRDF destination) {
+        parse(inputStream, lang, null, destination);
+    }
+
+    /**
+     * @param labels how blank node labels are turned into blank nodes, or null for the parser's default
+     */
+    private static void parse(InputStream inputStream, Lang lang, LabelToNode labels, StreamRDF destination) {
+        RDFParserBuilder parser = RDFParser.create()
+                .source(inputStream)
+                .lang(lang)
+                .checking(!Utils.isLineBased(lang));
+        if (labels != null) {
+            parser.labelToNode(labels);
+        }
+        if (RDFLanguages.sameLang(lang, Lang.RDFTHRIFT)) {
+            destination = NamespacePrefixer.dropPrefixes(destination);
+        }
+        parser.parse(destination);
+    }
+
+    /**
+     * The TDB bulk loader chooses the language of a file from its extension, so can only be used when there is one.
+     * Several files are passed to it as one N-Quads stream, so they must be N-Quads. RDF Thrift is parsed instead,
+     * as the bulk loader would keep the prefixes written to abbreviate its IRIs.
+     */
+    private static boolean isBulkLoadable(List<File> inputs, Lang lang) {
+        if (inputs.size() == 1) {
+            Lang fileLang = RDFLanguages.filenameToLang(inputs.get(0).getName());
+            return fileLang != null && !RDFLanguages.sameLang(fileLang, Lang.RDFTHRIFT);
+        }
+
+        return RDFLanguages.sameLang(lang, Lang.NQUADS);
+    }
+
+    private static boolean isBulkLoadable(File input) {
+        return isBulkLoadable(Collections.singletonList(input), null);
+    }
+
+    private static long bulkLoadTDB(Dataset dataset, File input) throws IOException {
+        return bulkLoadTDB(dataset, Collections.singletonList(input), null);
+    }
+
+    /**
+     * Load an empty TDB dataset with the TDB bulk loader, which fills the primary indexes as the dump is parsed and
+     * then builds the secondary indexes from them in sorted passes.
+     *
+     * @return the number of quads in the dataset once loaded, as the bulk loader doesn't count them
+     */
+    private static long bulkLoadTDB(Dataset dataset, List<File> inputs, Progress progress) throws IOException {
+        for (File input : inputs) {
+            if (!input.exists()) {
+                throw new FileNotFoundException(input.getAbsolutePath());
+            }
+        }
+
+        DatasetGraphTDB datasetGraph = TDBInternal.getBaseDatasetGraphTDB(dataset.asDatasetGraph());
+        if (inputs.size() == 1) {
+            TDBLoader.load(datasetGraph, inputs.get(0).getAbsolutePath(), false);
+        } else {
+            // As one document, so that blank node labels are shared between the files
+            InputStream inputStream = Utils.openInputs(inputs, progress);
+            try {
+                TDBLoader.load(datasetGraph, inputStream, false);
+            } finally {
+                inputStream.close();
+            }
+        }
+        TDB.sync(dataset);
+
+        long quads = datasetGraph.getDefaultGraph().size();
+        Iterator<Node> graphNodes = datasetGraph.listGraphNodes();
+        while (graphNodes.hasNext()) {
+            quads += datasetGraph.getGraph(graphNodes.next()).size();
+        }
+        return quads;
+    }
+
     public void writeConfiguration(File output) {
         if (configurationDataset != null) {
+            Progress progress = startStage("Configuration export");
             try {
-                OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(output, false));
-                writeRDF(outputStream, configurationDataset, outputFormat);
+                warnIfNoConfigurationGraphs();
+                OutputStream outputStream = Utils.openOutput(output, progress);
+                writeRDF(outputStream, configurationDataset, outputFormat, progress);
                 outputStream.close();
             } catch (FileNotFoundException e) {
                 throw new RuntimeException("Unable to write configuration dump (dir error)");
             } catch (IOException e) {
                 throw new RuntimeException("Unable to write configuration dump", e);
+            } finally {
+                progress.finish();
             }
         }
     }
 
     public void writeContent(File output) {
         if (contentDataset != null) {
+            Progress progress = startStage("Content export");
             try {
-                OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(output, false));
-                try {
-                    if (contentConnection != null) {
-                        if (LayoutType.LayoutTripleNodesHash.equals(contentStoreDesc.getLayout()) ||
-                            LayoutType.LayoutTripleNodesIndex.equals(contentStoreDesc.getLayout())) {
-                            if (DatabaseType.MySQL.equals(contentStoreDesc.getDbType()) ||
-                                    DatabaseType.PostgreSQL.equals(contentStoreDesc.getDbType())) {
+                prepareSQLExport(progress);
 
-                                long offset = 0;
-                                long limit  = 10000;
+                if (shardQuads > 0 || shardBytes > 0) {
+                    writeContentShards(output, progress);
+                    reportNodeCache();
+                    return;
+                }
 
-                                Dataset blankQuads = DatasetFactory.create();
+                if (partitionFiles && contentConnection != null && isSQLExportable()) {
+                    writeContentPartitions(output, progress);
+                    reportNodeCache();
+                    return;
+                }
 
-                                while (writeContentSQL(outputStream, blankQuads, offset, limit)) {
-                                    offset += limit;
+                OutputStream outputStream = Utils.openOutput(output, progress);
+                try {
+                    if (contentConnection != null && !isQuadFormat(outputFormat)) {
+                        // Quads from many graphs collapse into the same triples, so the duplicates are sorted out
+                        // on disk rather than in a union model on the heap
+                        try (TripleSorter sorter = new TripleSorter(output.getAbsoluteFile().getParentFile(), sortThreshold)) {
+                            if (isSQLExportable()) {
+                                readContentSQL(sorter, sorter, null, progress);
+                            } else {
+                                // The named graphs, as for the union model, and the default graph if it is asked for
+                                StreamRDF counted = progress.count(sorter);
+                                if (graphFilter.includesDefaultGraph()) {
+                                    StreamOps.sendQuadsToStream(contentDataset.asDatasetGraph().find(Quad.defaultGraphIRI, Node.ANY, Node.ANY, Node.ANY), counted);
+                                }
+                                for (Node graph : selectGraphs(contentDataset.asDatasetGraph())) {
+                                    StreamOps.sendQuadsToStream(contentDataset.asDatasetGraph().find(graph, Node.ANY, Node.ANY, Node.ANY), counted);
                                 }
+                            }
 
-                                if (blankQuads.asDatasetGraph().size() > 0) {
+                            long mergeStarted = System.currentTimeMillis();
+                            writeTriples(outputStream, outputFormat, contentDataset.getDefaultModel(), sorter::replay);
+                            addTime("triple_merge", System.currentTimeMillis() - mergeStarted);
+                        }
+                    } else if (contentConnection != null && isSQLExportable()) {
+                        if (streaming && isStreamable(outputFormat)) {
+                            // Each row goes straight to the writer, so no page is held in memory. As the
+                            // export is a single document, blank nodes keep their labels and can be
+                            // written in place
+                            StreamRDF stream = Utils.openWriterStream(outputStream, outputFormat);
+                            stream.start();
+                            StreamOps.sendPrefixesToStream(contentDataset.getDefaultModel(), stream);
+                            readContentSQL(stream, stream, null, progress);
+                            stream.finish();
+                        } else {
+                            // Each page is written as a separate document, so blank nodes are held back and
+                            // written together at the end to keep their labels consistent
+                            final Dataset quads = DatasetFactory.create();
+
+                            try (QuadSpillBuffer blankQuads = new QuadSpillBuffer(output.getAbsoluteFile().getParentFile(), spillThreshold)) {
+                                readContentSQL(
+                                        StreamRDFLib.dataset(quads.asDatasetGraph()),
+                                        blankQuads,
+                                        () -> {
+                                            if (!quads.asDatasetGraph().isEmpty()) {
+                                                writeRDF(outputStream, quads, outputFormat);
+                                                quads.asDatasetGraph().clear();
+                                            }
+                                        },
+                                        progress
+                                );
+
+                                if (blankQuads.size() > 0) {
+                                    long flushStarted = System.currentTimeMillis();
                                     writeRDF(outputStream, blankQuads, outputFormat);
+                                    addTime("blank_node_flush", System.currentTimeMillis() - flushStarted);
                                 }
-                            } else {
-                                writeRDF(outputStream, contentDataset, outputFormat);
                             }
-                        } else {
-                            writeRDF(outputStream, contentDataset, outputFormat);
                         }
                     } else {
-                        writeRDF(outputStream, contentDataset, outputFormat);
+                        writeRDF(outputStream, contentDataset, outputFormat, progress);
                     }
                 } finally {
                     outputStream.close();
                 }
+
+                reportNodeCache();
             } catch (FileNotFoundException e) {
                 throw new RuntimeException("Unable to write content dump (dir error)");
             } catch (IOException e) {
                 throw new RuntimeException("Unable to write content dump", e);
+            } finally {
+                progress.finish();
+            }
+        }
+    }
+
+    /**
+     * Set up the node cache and interner for reading the SDB tables, if they will be read
+     */
+    private void prepareSQLExport(Progress progress) {
+        if (contentConnection != null && isSQLExportable()) {
+            if (nodeCacheSize > 0) {
+                nodeCache = new SDBNodeCache(nodeCacheSize);
+            }
+
+            if (internSize > 0) {
+                interner = new NodeInterner(internSize);
+            }
+
+            // The graphs are selected by node key, so that only their rows are read from the Quads table
+            if (!graphFilter.selectsAll()) {
+                sqlGraphs = SDBQuadReader.selectGraphs(contentConnection, contentStoreDesc, graphFilter);
+            }
+
+            // Counting the Quads table takes a scan of an index, so is only worth it to estimate the time remaining
+            if (progressInterval > 0) {
+                progress.setTotalQuads(SDBQuadReader.countQuads(contentConnection, sqlGraphs));
             }
         }
     }
 
-    private boolean writeContentSQL(OutputStream outputStream, Dataset blankQuads, long offset, long limit) {
-        Dataset quads = DatasetFactory.create();
+    /**
+     * Read the whole of the Quads table, sending quads that involve a blank node to <code>blankQuads</code> and all
+     * others to <code>quads</code>. The streams are only called from the current thread, even when the table is read
+     * by several threads.
+     *
+     * @param pageComplete called after each page has been read, may be null
+     * @param progress counts the quads and pages read
+     */
+    private void readContentSQL(StreamRDF quads, StreamRDF blankQuads, final Runnable pageComplete, final Progress progress) {
+        final StreamRDF countedQuads = progress.count(quads);
+        final StreamRDF countedBlankQuads = progress.count(blankQuads);
+
+        if (threads < 2) {
+            SDBQuadReader reader = new SDBQuadReader(contentConnection, contentStoreDesc, pageSize, keysetPaging);
+            reader.setNodeCache(nodeCache);
+            reader.setInterner(interner);
+            reader.setPageReads(metrics == null ? null : metrics.getPageReads());
+            reader.setGraphs(sqlGraphs);
+            reader.read(countedQuads, countedBlankQuads, () -> {
+                progress.page();
+                if (pageComplete != null) {
+                    pageComplete.run();
+                }
+            });
+            return;
+        }
+
+        makeParallelReader().read(makePartitions(), new SDBParallelReader.BatchHandler() {
+            @Override
+            public void batch(SDBPartition partition, List<Quad> batchQuads, List<Quad> batchBlankQuads) {
+                for (Quad quad : batchQuads) {
+                    countedQuads.quad(quad);
+                }
+
+                for (Quad quad : batchBlankQuads) {
+                    countedBlankQuads.quad(quad);
+                }
+
+                progress.page();
+                if (pageComplete != null) {
+                    pageComplete.run();
+                }
+            }
 
+            @Override
+            public void partitionComplete(SDBPartition partition) {
+            }
+        });
+    }
+
+    /**
+     * Write the content as numbered shards alongside <code>output</code>, with a manifest listing them.
+     *
+     * When the SDB Quads table is read on one connection with keyset paging, a checkpoint is saved at the end of the
+     * first page after each checkpoint interval, so that an interrupted export can be resumed without reading most of
+     * the rows already exported. Each checkpoint waits for the compressor and starts a new gzip member, so they are
+     * not saved after every page.
+     */
+    private void writeContentShards(File output, final Progress progress) throws IOException {
+        File checkpointFile = ExportCheckpoint.fileFor(output);
+        boolean checkpointed = contentConnection != null && isSQLExportable() && keysetPaging && threads < 2;
+
+        ShardWriter shards = new ShardWriter(output, outputFormat, shardQuads, shardBytes);
+        shards.setProgress(progress);
+        StreamRDF countedShards = progress.count(shards);
         try {
-            java.sql.Statement stmt = contentConnection.createStatement();
-            ResultSet rs = stmt.executeQuery("SELECT \n" +
-                    "N1.lex AS s_lex, N1.lang AS s_lang, N1.datatype AS s_datatype, N1.type AS s_type,\n" +
-                    "N2.lex AS p_lex, N2.lang AS p_lang, N2.datatype AS p_datatype, N2.type AS p_type,\n" +
-                    "N3.lex AS o_lex, N3.lang AS o_lang, N3.datatype AS o_datatype, N3.type AS o_type,\n" +
-                    "N4.lex AS g_lex, N4.lang AS g_lang, N4.datatype AS g_datatype, N4.type AS g_type \n" +
-                    "FROM\n" +
-                    "(SELECT g,s,p,o FROM Quads" +
-                    " ORDER BY g,s,p,o " +
-                    (limit > 0 ? "LIMIT " + limit : "") +
-                    (offset > 0 ? " OFFSET " + offset : "") + ") Q\n" +
-                    ( LayoutType.LayoutTripleNodesHash.equals(contentStoreDesc.getLayout()) ?
-                            (
-                                    "LEFT OUTER JOIN Nodes AS N1 ON ( Q.s = N1.hash ) " +
-                                    "LEFT OUTER JOIN Nodes AS N2 ON ( Q.p = N2.hash ) " +
-                                    "LEFT OUTER JOIN Nodes AS N3 ON ( Q.o = N3.hash ) " +
-                                    "LEFT OUTER JOIN Nodes AS N4 ON ( Q.g = N4.hash ) "
-                            ) :
-                            (
-                                    "LEFT OUTER JOIN Nodes AS N1 ON ( Q.s = N1.id ) " +
-                                    "LEFT OUTER JOIN Nodes AS N2 ON ( Q.p = N2.id ) " +
-                                    "LEFT OUTER JOIN Nodes AS N3 ON ( Q.o = N3.id ) " +
-                                    "LEFT OUTER JOIN Nodes AS N4 ON ( Q.g = N4.id ) "
-                            )
-                    )
-            );
+            if (checkpointed) {
+                final SDBQuadReader reader = new SDBQuadReader(contentConnection, contentStoreDesc, pageSize, keysetPaging);
+                reader.setNodeCache(nodeCache);
+                reader.setInterner(interner);
+                reader.setPageReads(metrics == null ? null : metrics.getPageReads());
+                reader.setGraphs(sqlGraphs);
+
+                if (resume) {
+                    if (!checkpointFile.exists()) {
+                        throw new RuntimeException("No export checkpoint to resume from (" + checkpointFile.getName() + ")");
+                    }
+
+                    ExportCheckpoint checkpoint = ExportCheckpoint.read(checkpointFile);
+                    shards.resume(checkpoint);
+                    reader.setPosition(checkpoint.key);
+                    System.out.println(String.format("Resuming content export at shard %d", checkpoint.shard));
+                }
+
+                shards.start();
+                final long interval = checkpointInterval * 1000;
+                final long[] lastCheckpoint = { System.currentTimeMillis() };
+                reader.read(countedShards, countedShards, () -> {
+                    progress.page();
+                    if (System.currentTimeMillis() - lastCheckpoint[0] < interval) {
+                        return;
+                    }
+
+                    try {
+                        shards.checkpoint(reader.getPosition()).write(checkpointFile);
+                    } catch (IOException e) {
+                        throw new RuntimeException("Unable to write export checkpoint", e);
+                    }
+                    lastCheckpoint[0] = System.currentTimeMillis();
+                });
+            } else {
+                if (resume) {
+                    throw new RuntimeException("Only a single threaded, keyset paged SDB export can be resumed");
+                }
+
+                shards.start();
+                if (contentConnection != null && isSQLExportable()) {
+                    readContentSQL(shards, shards, null, progress);
+                } else {
+                    sendQuads(contentDataset.asDatasetGraph(), countedShards);
+                }
+            }
+            shards.finish();
+        } finally {
+            shards.close();
+        }
+
+        if (checkpointFile.exists() && !checkpointFile.delete()) {
+            throw new IOException("Unable to remove export checkpoint " + checkpointFile.getAbsolutePath());
+        }
+    }
 
+    /**
+     * Copy the configuration straight into the configuration store of <code>target</code>
+     */
+    public void migrateConfiguration(ApplicationStores target) {
+        if (configurationDataset != null && target.configurationDataset != null) {
+            Progress progress = startStage("Configuration migration");
             try {
-                while (rs.next()) {
-                    Node subjectNode = makeNode(
-                            rs.getString("s_lex"),
-                            rs.getString("s_datatype"),
-                            rs.getString("s_lang"),
-                            ValueType.lookup(rs.getInt("s_type")));
-
-                    Node predicateNode = makeNode(
-                            rs.getString("p_lex"),
-                            rs.getString("p_datatype"),
-                            rs.getString("p_lang"),
-                            ValueType.lookup(rs.getInt("p_type")));
-
-                    Node objectNode = makeNode(
-                            rs.getString("o_lex"),
-                            rs.getString("o_datatype"),
-                            rs.getString("o_lang"),
-                            ValueType.lookup(rs.getInt("o_type")));
-
-                    Node graphNode = makeNode(
-                            rs.getString("g_lex"),
-                            rs.getString("g_datatype"),
-                            rs.getString("g_lang"),
-                            ValueType.lookup(rs.getInt("g_type")));
-
-                    if (subjectNode.isBlank() || predicateNode.isBlank() || objectNode.isBlank()) {
-                        blankQuads.asDatasetGraph().add(Quad.create(
-                                graphNode,
-                                Triple.create(subjectNode, predicateNode, objectNode)
-                        ));
+                StreamRDF destination = progress.count(StreamRDFLib.dataset(target.configurationDataset.asDatasetGraph()));
+                destination.start();
+                sendQuads(configurationDataset.asDatasetGraph(), destination);
+                destination.finish();
+                TDB.sync(target.configurationDataset);
+            } finally {
+                progress.finish();
+            }
+        }
+    }
+
+    /**
+     * Copy the content straight into the content store of <code>target</code>, without writing it out as RDF.
+     *
+     * The quads are read on the current thread, from the SDB tables if possible, and loaded into the target on a
+     * thread of its own - in batches through the bulk loader for SDB. Blank nodes keep their labels, so they stay the
+     * same blank nodes in the target.
+     */
+    public void migrateContent(ApplicationStores target) {
+        if (contentDataset != null && target.contentDataset != null) {
+            Progress progress = startStage("Content migration");
+            try {
+                prepareSQLExport(progress);
+
+                StreamRDF destination;
+                SDBQuadLoader loader = null;
+                if (target.contentConnection != null) {
+                    loader = new SDBQuadLoader(target.contentStore, target.batchSize);
+                    destination = loader;
+                } else {
+                    destination = StreamRDFLib.dataset(target.contentDataset.asDatasetGraph());
+                }
+
+                try (AsyncQuadWriter writer = new AsyncQuadWriter(destination)) {
+                    writer.start();
+                    if (contentConnection != null && isSQLExportable()) {
+                        readContentSQL(writer, writer, null, progress);
                     } else {
-                        quads.asDatasetGraph().add(Quad.create(
-                                graphNode,
-                                Triple.create(subjectNode, predicateNode, objectNode)
-                        ));
+                        sendQuads(contentDataset.asDatasetGraph(), progress.count(writer));
+                    }
+                    writer.finish();
+                } finally {
+                    // Only once the writing thread has stopped using it
+                    if (loader != null) {
+                        loader.close();
                     }
                 }
+
+                if (target.contentConnection == null) {
+                    TDB.sync(target.contentDataset);
+                }
+
+                reportNodeCache();
             } finally {
-                rs.close();
+                progress.finish();
             }
+        }
+    }
 
-            if (quads.asDatasetGraph().size() > 0) {
-                writeRDF(outputStream, quads, outputFormat);
-                return true;
+    /**
+     * Write a sorted snapshot of the configuration, and a patch of the changes since the previous snapshot
+     */
+    public void writeConfigurationDelta(File snapshot, File patch) {
+        if (configurationDataset != null) {
+            Progress progress = startStage("Configuration delta");
+            try (QuadDelta delta = new QuadDelta(snapshot.getAbsoluteFile().getParentFile(), sortThreshold)) {
+                warnIfNoConfigurationGraphs();
+                sendQuads(configurationDataset.asDatasetGraph(), progress.count(delta));
+                writeDelta(delta, snapshot, patch);
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to write configuration delta", e);
+            } finally {
+                progress.finish();
             }
-        } catch (SQLException sqle) {
-            throw new RuntimeException("Unable to retrieve triples", sqle);
-        } finally {
+        }
+    }
+
+    /**
+     * The graph filter applies to the configuration store as well as the content, so warn if it selects none of the
+     * configuration graphs, e.g. as it only names content graphs
+     */
+    private void warnIfNoConfigurationGraphs() {
+        if (graphFilter.selectsAll()) {
+            return;
+        }
+
+        DatasetGraph datasetGraph = configurationDataset.asDatasetGraph();
+        if (graphFilter.accepts(Quad.defaultGraphIRI) && !datasetGraph.getDefaultGraph().isEmpty()) {
+            return;
+        }
+        for (Node graph : selectGraphs(datasetGraph)) {
+            if (datasetGraph.containsGraph(graph)) {
+                return;
+            }
+        }
+
+        System.err.println("Warning: the graphs selected are none of those in the configuration store, " +
+                "so no configuration is exported");
+    }
+
+    /**
+     * Write a sorted snapshot of the content, and a patch of the quads added and removed since the previous snapshot.
+     *
+     * The content is read as for an export, from the SDB tables if possible, but sorted on disk instead of written out,
+     * so only the changes need to be kept or sent elsewhere.
+     */
+    public void writeContentDelta(File snapshot, File patch) {
+        if (contentDataset != null) {
+            Progress progress = startStage("Content delta");
+            try (QuadDelta delta = new QuadDelta(snapshot.getAbsoluteFile().getParentFile(), sortThreshold)) {
+                prepareSQLExport(progress);
+
+                if (contentConnection != null && isSQLExportable()) {
+                    readContentSQL(delta, delta, null, progress);
+                } else {
+                    sendQuads(contentDataset.asDatasetGraph(), progress.count(delta));
+                }
+
+                writeDelta(delta, snapshot, patch);
+                reportNodeCache();
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to write content delta", e);
+            } finally {
+                progress.finish();
+            }
+        }
+    }
+
+    private void writeDelta(QuadDelta delta, File snapshot, File patch) throws IOException {
+        boolean first = !snapshot.exists();
+
+        long mergeStarted = System.currentTimeMillis();
+        long quads = delta.write(snapshot, patch);
+        addTime("delta_merge", System.currentTimeMillis() - mergeStarted);
+
+        if (first) {
+            System.out.println(String.format("No previous snapshot, wrote %s of %d quads", snapshot.getName(), quads));
+        } else {
+            System.out.println(String.format("Wrote %s with %d quads added and %d removed", patch.getName(),
+                    delta.getAdded(), delta.getRemoved()));
+        }
+    }
+
+    /**
+     * Apply the patches written by delta exports to the configuration store, in order
+     *
+     * @param applied file recording the last patch applied, so that it and the patches before it are passed over
+     */
+    public void applyConfigurationDelta(List<File> patches, File applied) {
+        if (configurationDataset != null) {
+            Progress progress = startStage("Configuration delta import");
+            try {
+                final DatasetGraph datasetGraph = configurationDataset.asDatasetGraph();
+                applyPatches(patches, applied, new PatchReader.Changes() {
+                    @Override
+                    public void add(Quad quad) {
+                        datasetGraph.add(quad);
+                    }
+
+                    @Override
+                    public void delete(Quad quad) {
+                        datasetGraph.delete(quad);
+                    }
+                }, () -> TDB.sync(configurationDataset), progress);
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to apply configuration patch", e);
+            } finally {
+                progress.finish();
+            }
+        }
+    }
+
+    /**
+     * Apply the patches written by delta exports to the content store, in order. SDB stores are changed in batches of
+     * <code>batchSize</code> through the bulk loader.
+     *
+     * @param applied file recording the last patch applied, so that it and the patches before it are passed over
+     */
+    public void applyContentDelta(List<File> patches, File applied) {
+        if (contentDataset != null) {
+            Progress progress = startStage("Content delta import");
+            try {
+                if (contentConnection != null) {
+                    try (final SDBQuadLoader loader = new SDBQuadLoader(contentStore, batchSize)) {
+                        loader.start();
+                        applyPatches(patches, applied, new PatchReader.Changes() {
+                            @Override
+                            public void add(Quad quad) {
+                                loader.quad(quad);
+                            }
+
+                            @Override
+                            public void delete(Quad quad) {
+                                loader.delete(quad);
+                            }
+                        }, () -> {
+                            // Commit whatever is left of the current batch
+                            loader.finish();
+                            loader.start();
+                        }, progress);
+                        loader.finish();
+                    }
+                } else {
+                    final DatasetGraph datasetGraph = contentDataset.asDatasetGraph();
+                    applyPatches(patches, applied, new PatchReader.Changes() {
+                        @Override
+                        public void add(Quad quad) {
+                            datasetGraph.add(quad);
+                        }
+
+                        @Override
+                        public void delete(Quad quad) {
+                            datasetGraph.delete(quad);
+                        }
+                    }, () -> TDB.sync(contentDataset), progress);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to apply content patch", e);
+            } finally {
+                progress.finish();
+            }
+        }
+    }
+
+    /**
+     * Apply each patch that follows on from the last one applied, making the changes to graphs that the graph filter
+     * selects. The last patch applied is recorded once its changes have been committed, so that an interrupted import
+     * can be run again.
+     *
+     * @param commit makes the changes so far durable
+     */
+    private void applyPatches(List<File> files, File applied, final PatchReader.Changes changes, Runnable commit,
+                              final Progress progress) throws IOException {
+        String lastId = PatchReader.readApplied(applied);
+
+        List<PatchReader> patches = new ArrayList<>();
+        for (File file : files) {
+            PatchReader patch = new PatchReader(file);
+            if (patch.getId().equals(lastId)) {
+                // Everything up to here has been applied already
+                patches.clear();
+            } else {
+                patches.add(patch);
+            }
+        }
+
+        PatchReader.Changes selected = new PatchReader.Changes() {
+            @Override
+            public void add(Quad quad) {
+                if (graphFilter.accepts(quad.getGraph())) {
+                    changes.add(quad);
+                    progress.addQuads(1);
+                }
+            }
+
+            @Override
+            public void delete(Quad quad) {
+                if (graphFilter.accepts(quad.getGraph())) {
+                    changes.delete(quad);
+                    progress.addQuads(1);
+                }
+            }
+        };
+
+        for (PatchReader patch : patches) {
+            if (lastId != null && !lastId.equals(patch.getPrevious())) {
+                throw new IOException("Patch " + patch.getFile().getName() + " does not follow on from the last patch applied");
+            }
+
+            patch.apply(selected);
+            commit.run();
+
+            PatchReader.writeApplied(applied, patch.getId());
+            lastId = patch.getId();
+            System.out.println(String.format("Applied %s with %d quads added and %d removed", patch.getFile().getName(),
+                    patch.getAdded(), patch.getRemoved()));
+        }
+
+        if (patches.isEmpty()) {
+            System.out.println("No new patches to apply");
+        }
+    }
+
+    /**
+     * Write each partition of the Quads table to its own numbered file alongside <code>output</code>.
+     *
+     * Blank node quads are written last, to a single file of their own, so that their labels are consistent.
+     */
+    private void writeContentPartitions(final File output, final Progress progress) throws IOException {
+        final Map<Integer, PartitionWriter> writers = new HashMap<>();
+
+        try (QuadSpillBuffer blankQuads = new QuadSpillBuffer(output.getAbsoluteFile().getParentFile(), spillThreshold)) {
+            try {
+                makeParallelReader().read(makePartitions(), new SDBParallelReader.BatchHandler() {
+                    @Override
+                    public void batch(SDBPartition partition, List<Quad> quads, List<Quad> batchBlankQuads) {
+                        PartitionWriter writer = writers.get(partition.getIndex());
+                        if (writer == null) {
+                            writer = new PartitionWriter(Utils.numberedFile(output, partition.getIndex()));
+                            writers.put(partition.getIndex(), writer);
+                        }
+
+                        writer.write(quads);
+
+                        for (Quad quad : batchBlankQuads) {
+                            blankQuads.quad(quad);
+                        }
+
+                        progress.addQuads(quads.size() + batchBlankQuads.size());
+                        progress.page();
+                    }
+
+                    @Override
+                    public void partitionComplete(SDBPartition partition) {
+                        PartitionWriter writer = writers.remove(partition.getIndex());
+                        if (writer != null) {
+                            writer.close();
+                        }
+                    }
+                });
+            } finally {
+                for (PartitionWriter writer : writers.values()) {
+                    writer.close();
+                }
+            }
+
+            if (blankQuads.size() > 0) {
+                long flushStarted = System.currentTimeMillis();
+                OutputStream outputStream = Utils.openOutput(Utils.numberedFile(output, "blank"));
+                try {
+                    writeRDF(outputStream, blankQuads, outputFormat);
+                } finally {
+                    outputStream.close();
+                }
+                addTime("blank_node_flush", System.currentTimeMillis() - flushStarted);
+            }
+        }
+    }
+
+    private SDBParallelReader makeParallelReader() {
+        SDBParallelReader reader = new SDBParallelReader(() -> makeConnection(contentProperties), contentStoreDesc, pageSize, keysetPaging, threads);
+        reader.setNodeCache(nodeCache);
+        reader.setInterner(interner);
+        reader.setPageReads(metrics == null ? null : metrics.getPageReads());
+        return reader;
+    }
+
+    private void reportNodeCache() {
+        if (nodeCache != null) {
+            System.out.println(String.format("Node cache: %d hits, %d misses (%.1f%% hit ratio)",
+                    nodeCache.getHits(), nodeCache.getMisses(), nodeCache.getHitRatio() * 100));
+        }
+
+        if (interner != null) {
+            System.out.println(String.format("Node interning: %d hits, %d misses (%.1f%% hit ratio)",
+                    interner.getHits(), interner.getMisses(), interner.getHitRatio() * 100));
+        }
+    }
+
+    private void addTime(String phase, long millis) {
+        if (metrics != null) {
+            metrics.addTime(phase, millis);
+        }
+    }
+
+    private Progress startStage(String stage) {
+        Progress progress = new Progress(stage, progressInterval * 1000);
+        stages.add(progress);
+        progress.start();
+        return progress;
+    }
+
+    /**
+     * Print the time taken by each stage of the import or export, and the quads handled
+     */
+    public void printSummary() {
+        long total = 0;
+        System.out.println("Summary:");
+        for (Progress stage : stages) {
+            System.out.println(String.format("  %-24s %10.1fs %14d quads", stage.getStage(), stage.getMillis() / 1000.0, stage.getQuads()));
+            total += stage.getMillis();
+        }
+        System.out.println(String.format("  %-24s %10.1fs", "Total", total / 1000.0));
+    }
+
+    private List<SDBPartition> makePartitions() {
+        if (partitionByGraph) {
+            return SDBPartition.byGraph(contentConnection, sqlGraphs);
         }
 
-        return false;
+        return SDBPartition.byRange(contentConnection, sqlGraphs, threads, pageSize);
     }
 
-    // Copied from Jena SQLBridge2
-    private static Node makeNode(String lex, String datatype, String lang, ValueType vType) {
-        switch(vType) {
-            case BNODE:
-                return NodeFactory.createBlankNode(lex);
-            case URI:
-                return NodeFactory.createURI(lex);
-            case STRING:
-                return NodeFactory.createLiteral(lex, lang);
-            case XSDSTRING:
-                return NodeFactory.createLiteral(lex, XSDDatatype.XSDstring);
-            case INTEGER:
-                return NodeFactory.createLiteral(lex, XSDDatatype.XSDinteger);
-            case DOUBLE:
-                return NodeFactory.createLiteral(lex, XSDDatatype.XSDdouble);
-            case DATETIME:
-                return NodeFactory.createLiteral(lex, XSDDatatype.XSDdateTime);
-            case OTHER:
-                RDFDatatype dt = TypeMapper.getInstance().getSafeTypeByName(datatype);
-                return NodeFactory.createLiteral(lex, dt);
-            default:
-                return NodeFactory.createLiteral("UNRECOGNIZED");
+    /**
+     * Output for one partition of the Quads table, written as a single document if the format can be streamed.
+     */
+    private class PartitionWriter {
+        private final OutputStream outputStream;
+        private final StreamRDF stream;
+
+        PartitionWriter(File file) {
+            try {
+                outputStream = Utils.openOutput(file);
+            } catch (FileNotFoundException e) {
+                throw new RuntimeException("Unable to write content dump (dir error)");
+            }
+
+            if (isStreamable(outputFormat)) {
+                stream = Utils.openWriterStream(outputStream, outputFormat);
+                stream.start();
+            } else {
+                stream = null;
+            }
+        }
+
+        void write(List<Quad> quads) {
+            if (stream != null) {
+                for (Quad quad : quads) {
+                    stream.quad(quad);
+                }
+            } else if (!quads.isEmpty()) {
+                Dataset dataset = DatasetFactory.create();
+                for (Quad quad : quads) {
+                    dataset.asDatasetGraph().add(quad);
+                }
+                writeRDF(outputStream, dataset, outputFormat);
+            }
+        }
+
+        void close() {
+            try {
+                if (stream != null) {
+                    stream.finish();
+                }
+                outputStream.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to write content dump", e);
+            }
         }
     }
 
     private void writeRDF(OutputStream outputStream, Dataset dataset, RDFFormat outputFormat){
-        if (outputFormat.equals(RDFFormat.NQ) || outputFormat.equals(RDFFormat.TRIG_BLOCKS) ||
-                outputFormat.equals(RDFFormat.JSONLD)) {
+        writeRDF(outputStream, dataset, outputFormat, null);
+    }
+
+    /**
+     * @param progress counts the quads written, may be null
+     */
+    private void writeRDF(OutputStream outputStream, Dataset dataset, RDFFormat outputFormat, Progress progress){
+        if (isStreamable(outputFormat)) {
+            // The dataset's prefixes, then its quads straight from find(), so a store is written without holding
+            // its quads in memory. TDB returns each graph's quads in GSPO index order, so the writer's grouping of
+            // consecutive quads by graph and subject groups them fully. SDB's find() has no ORDER BY, so for SDB
+            // stores the grouping is best effort, but the TriG is valid either way
+            StreamRDF stream = Utils.openWriterStream(outputStream, outputFormat);
+            stream.start();
+            if (graphFilter.selectsAll()) {
+                StreamOps.sendDatasetToStream(dataset.asDatasetGraph(), progress == null ? stream : progress.count(stream));
+            } else {
+                StreamOps.sendPrefixesToStream(dataset.getDefaultModel(), stream);
+                sendQuads(dataset.asDatasetGraph(), progress == null ? stream : progress.count(stream));
+            }
+            stream.finish();
+        } else if (isQuadFormat(outputFormat)) {
             // for quad formats, write the dataset
+            if (!graphFilter.selectsAll()) {
+                Dataset selected = DatasetFactory.create();
+                selected.getDefaultModel().setNsPrefixes(dataset.getDefaultModel());
+                sendQuads(dataset.asDatasetGraph(), StreamRDFLib.dataset(selected.asDatasetGraph()));
+                dataset = selected;
+            }
             RDFDataMgr.write(outputStream, dataset, outputFormat);
+        } else if (TDBFactory.isBackedByTDB(dataset)) {
+            writeTriplesTDB(outputStream, dataset, outputFormat, progress);
         } else {
             // for triple formats, write the union model. Graph information is not included
             RDFDataMgr.write(outputStream, dataset.getUnionModel(), outputFormat);
         }
     }
 
+    /**
+     * Write the distinct triples of a TDB dataset's named graphs, the same triples as its union model, scanned from
+     * its quad index in a read transaction. The default graph's triples are written first if the graph filter asks
+     * for it, and a triple that is also in one of the named graphs is written again with them.
+     */
+    private void writeTriplesTDB(OutputStream outputStream, Dataset dataset, RDFFormat outputFormat, final Progress progress) {
+        dataset.begin(ReadWrite.READ);
+        try {
+            final DatasetGraphTDB datasetGraph = TDBInternal.getDatasetGraphTDB(dataset.asDatasetGraph());
+            final List<Node> graphs = graphFilter.selectsAll() ? null : selectGraphs(datasetGraph);
+            writeTriples(outputStream, outputFormat, dataset.getDefaultModel(), stream -> {
+                StreamRDF destination = progress == null ? stream : progress.count(stream);
+                if (graphFilter.includesDefaultGraph()) {
+                    StreamOps.sendTriplesToStream(datasetGraph.getDefaultGraph().find(), destination);
+                }
+
+                if (graphs != null && graphs.size() == 1) {
+                    // A graph holds no duplicates, so its triples can be read from its own part of the GSPO index
+                    StreamOps.sendTriplesToStream(datasetGraph.getGraph(graphs.get(0)).find(), destination);
+                } else if (graphs == null || !graphs.isEmpty()) {
+                    TDBTripleScan scan = new TDBTripleScan(datasetGraph);
+                    scan.setGraphs(graphs);
+                    scan.send(destination);
+                }
+            });
+        } finally {
+            dataset.end();
+        }
+    }
+
+    /**
+     * Send the quads of the graphs that the graph filter selects. Each graph is read by find() on its graph node, so
+     * TDB scans only its part of the GSPO index, and SDB selects only its rows.
+     */
+    private void sendQuads(DatasetGraph dataset, StreamRDF stream) {
+        if (graphFilter.selectsAll()) {
+            StreamOps.sendQuadsToStream(dataset.find(), stream);
+            return;
+        }
+
+        if (graphFilter.accepts(Quad.defaultGraphIRI)) {
+            StreamOps.sendQuadsToStream(dataset.find(Quad.defaultGraphIRI, Node.ANY, Node.ANY, Node.ANY), stream);
+        }
+
+        for (Node graph : selectGraphs(dataset)) {
+            StreamOps.sendQuadsToStream(dataset.find(graph, Node.ANY, Node.ANY, Node.ANY), stream);
+        }
+    }
+
+    /**
+     * The named graphs that the graph filter selects. Graphs given exactly aren't looked for in the store.
+     */
+    private List<Node> selectGraphs(DatasetGraph dataset) {
+        List<Node> graphs = graphFilter.getExactGraphs();
+        if (graphs != null) {
+            return graphs;
+        }
+
+        graphs = new ArrayList<>();
+        Iterator<Node> graphNodes = dataset.listGraphNodes();
+        while (graphNodes.hasNext()) {
+            Node graph = graphNodes.next();
+            if (graphFilter.accepts(graph)) {
+                graphs.add(graph);
+            }
+        }
+
+        return graphs;
+    }
+
+    /**
+     * Write the triples that <code>triples</code> sends to the stream it is given, with the prefixes. Turtle is
+     * written in blocks, so that it can be streamed; RDF/XML can't be, so the triples are collected into a graph.
+     */
+    private static void writeTriples(OutputStream outputStream, RDFFormat outputFormat, PrefixMapping prefixes, Consumer<StreamRDF> triples) {
+        RDFFormat streamFormat = RDFFormat.TURTLE.equals(outputFormat) ? RDFFormat.TURTLE_BLOCKS : outputFormat;
+        if (StreamRDFWriter.registered(streamFormat)) {
+            StreamRDF stream = Utils.openWriterStream(outputStream, streamFormat);
+            stream.start();
+            StreamOps.sendPrefixesToStream(prefixes, stream);
+            triples.accept(stream);
+            stream.finish();
+        } else {
+            Graph graph = GraphFactory.createDefaultGraph();
+            graph.getPrefixMapping().setNsPrefixes(prefixes);
+            triples.accept(StreamRDFLib.graph(graph));
+            RDFDataMgr.write(outputStream, graph, outputFormat);
+        }
+    }
+
+    private void writeRDF(OutputStream outputStream, QuadSpillBuffer buffer, RDFFormat outputFormat) {
+        if (isStreamable(outputFormat)) {
+            StreamRDF stream = Utils.openWriterStream(outputStream, outputFormat);
+            stream.start();
+            buffer.replay(stream);
+            stream.finish();
+        } else {
+            // The writer needs all of the quads at once
+            Dataset dataset = DatasetFactory.create();
+            buffer.replay(StreamRDFLib.dataset(dataset.asDatasetGraph()));
+            writeRDF(outputStream, dataset, outputFormat);
+        }
+    }
+
+    /**
+     * Whether the content store can be exported by reading the SDB tables directly
+     */
+    private boolean isSQLExportable() {
+        return (LayoutType.LayoutTripleNodesHash.equals(contentStoreDesc.getLayout()) ||
+                LayoutType.LayoutTripleNodesIndex.equals(contentStoreDesc.getLayout())) &&
+                (DatabaseType.MySQL.equals(contentStoreDesc.getDbType()) ||
+                DatabaseType.PostgreSQL.equals(contentStoreDesc.getDbType()));
+    }
+
+    private static boolean isQuadFormat(RDFFormat outputFormat) {
+        return outputFormat.equals(RDFFormat.NQ) || outputFormat.equals(RDFFormat.TRIG_BLOCKS) ||
+                outputFormat.equals(RDFFormat.JSONLD) || outputFormat.equals(RDFFormat.RDF_THRIFT);
+    }
+
+    /**
+     * Quad formats that RIOT can write incrementally, without first collecting the quads into a dataset
+     */
+    private static boolean isStreamable(RDFFormat outputFormat) {
+        return isQuadFormat(outputFormat) && StreamRDFWriter.registered(outputFormat);
+    }
+
     public boolean isEmpty() {
         boolean empty = true;
 
@@ -486,8 +1564,10 @@ public class ApplicationStores {
 
             String dbtypeStr = props.getProperty(PROPERTY_DB_TYPE, DEFAULT_TYPE).trim();
             if (DEFAULT_TYPE.equals(dbtypeStr)) {
+                // Connector/J reads the whole result set into memory, whatever the fetch size, unless it is told to
+                // fetch rows through a server side cursor
                 if (!url.contains("?")) {
-                    url += "?useUnicode=yes&characterEncoding=utf8&nullNamePatternMatchesAll=true&cachePrepStmts=true&useServerPrepStmts=true&serverTimezone=UTC&useSSL=false";
+                    url += "?useUnicode=yes&characterEncoding=utf8&nullNamePatternMatchesAll=true&cachePrepStmts=true&useServerPrepStmts=true&serverTimezone=UTC&useSSL=false&useCursorFetch=true";
                 } else {
                     String urlLwr = url.toLowerCase();
                     if (!urlLwr.contains("useunicode")) {
@@ -511,6 +1591,9 @@ public class ApplicationStores {
                     if (!urlLwr.contains("usessl")) {
                         url += "&useSSL=false";
                     }
+                    if (!urlLwr.contains("usecursorfetch")) {
+                        url += "&useCursorFetch=true";
+                    }
                 }
             }
 
@@ -522,6 +1605,14 @@ public class ApplicationStores {
         }
     }
 
+    static final long DEFAULT_PAGE_SIZE = 10000;
+    static final long DEFAULT_SPILL_THRESHOLD = 100000;
+    static final long DEFAULT_SORT_THRESHOLD = 1000000;
+    static final int DEFAULT_INTERN_SIZE = 100000;
+    static final long DEFAULT_BATCH_SIZE = 50000;
+    static final long DEFAULT_PROGRESS_INTERVAL = 30;
+    static final long DEFAULT_CHECKPOINT_INTERVAL = 60;
+
     static final String DEFAULT_DRIVER_CLASS = "com.mysql.jdbc.Driver";
     static final String DEFAULT_LAYOUT = "layout2/hash";
     static final String DEFAULT_TYPE = "MySQL";
@@ -0,0 +1,128 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sparql.core.Quad;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Passes quads on to another stream on a thread of its own, so that reading and writing run side by side.
+ *
+ * Quads are collected into batches, which are passed to the writing thread through a bounded queue, so the reader
+ * only waits when the writer is several batches behind. The destination is only ever called from the writing
+ * thread. Errors from the writing thread are thrown from the next quad, or from finish.
+ */
+public class AsyncQuadWriter extends StreamRDFBase implements AutoCloseable {
+    private final StreamRDF destination;
+    private final BlockingQueue<List<Quad>> batches = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+    private final Thread writer;
+
+    private List<Quad> batch = new ArrayList<>(BATCH_SIZE);
+
+    private volatile Throwable error;
+
+    public AsyncQuadWriter(final StreamRDF destination) {
+        this.destination = destination;
+        writer = new Thread(this::write, "writer");
+        writer.setDaemon(true);
+    }
+
+    @Override
+    public void start() {
+        writer.start();
+    }
+
+    @Override
+    public void triple(Triple triple) {
+        quad(Quad.create(Quad.defaultGraphNodeGenerated, triple));
+    }
+
+    @Override
+    public void quad(Quad quad) {
+        batch.add(quad);
+        if (batch.size() >= BATCH_SIZE) {
+            put(batch);
+            batch = new ArrayList<>(BATCH_SIZE);
+        }
+    }
+
+    /**
+     * Wait for the writing thread to pass on everything, and finish the destination
+     */
+    @Override
+    public void finish() {
+        if (!batch.isEmpty()) {
+            put(batch);
+        }
+        put(END);
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while writing quads", e);
+        }
+
+        checkError();
+    }
+
+    /**
+     * Stop the writing thread, if it hasn't finished, once it has passed on the batch it is writing. Nothing more is
+     * passed on, and the destination is not finished, so that it can be cleaned up after an error.
+     */
+    @Override
+    public void close() {
+        if (writer.isAlive()) {
+            writer.interrupt();
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void put(List<Quad> quads) {
+        try {
+            while (!batches.offer(quads, 1, TimeUnit.SECONDS)) {
+                checkError();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while writing quads", e);
+        }
+    }
+
+    private void checkError() {
+        if (error != null) {
+            throw new RuntimeException("Unable to write quads", error);
+        }
+    }
+
+    private void write() {
+        try {
+            destination.start();
+
+            List<Quad> quads;
+            while ((quads = batches.take()) != END) {
+                for (Quad quad : quads) {
+                    destination.quad(quad);
+                }
+            }
+
+            destination.finish();
+        } catch (Throwable t) {
+            error = t;
+        }
+    }
+
+    private static final int BATCH_SIZE = 10000;
+    private static final int QUEUED_BATCHES = 4;
+    private static final List<Quad> END = new ArrayList<>();
+}
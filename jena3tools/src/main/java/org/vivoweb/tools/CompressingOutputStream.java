@@ -0,0 +1,178 @@
+package org.vivoweb.tools;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip compresses everything written to it on a thread of its own, so that compression and serialization run side
+ * by side.
+ *
+ * Bytes are collected into blocks, which are passed to the compressing thread through a bounded queue. The writer
+ * only waits when the compressor is several blocks behind. Errors from the compressing thread are thrown from the
+ * next write, or from close.
+ */
+public class CompressingOutputStream extends OutputStream {
+    private final BlockingQueue<byte[]> blocks = new ArrayBlockingQueue<>(QUEUED_BLOCKS);
+    private final Thread compressor;
+    private final Semaphore synced = new Semaphore(0);
+
+    private byte[] block = new byte[BLOCK_SIZE];
+    private int length = 0;
+    private boolean closed = false;
+
+    private volatile Throwable error;
+
+    public CompressingOutputStream(final OutputStream out) {
+        compressor = new Thread(() -> compress(out), "gzip");
+        compressor.setDaemon(true);
+        compressor.start();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (length == block.length) {
+            flushBlock();
+        }
+
+        block[length++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (length == block.length) {
+                flushBlock();
+            }
+
+            int count = Math.min(len, block.length - length);
+            System.arraycopy(b, off, block, length, count);
+            length += count;
+            off += count;
+            len -= count;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        if (length > 0) {
+            flushBlock();
+        }
+        put(END);
+
+        try {
+            compressor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing", e);
+        }
+
+        checkError();
+    }
+
+    /**
+     * Complete the current gzip member and wait until everything written so far has been passed to the underlying
+     * stream, so that it ends at a point where the output can be truncated and appended to. Gzip readers treat
+     * the members as one stream.
+     */
+    public void sync() throws IOException {
+        if (length > 0) {
+            flushBlock();
+        }
+        put(SYNC);
+
+        try {
+            while (!synced.tryAcquire(1, TimeUnit.SECONDS)) {
+                checkError();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing", e);
+        }
+
+        checkError();
+    }
+
+    private void flushBlock() throws IOException {
+        checkError();
+
+        byte[] full = length == block.length ? block : Arrays.copyOf(block, length);
+        put(full);
+
+        block = new byte[BLOCK_SIZE];
+        length = 0;
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        try {
+            while (!blocks.offer(bytes, 1, TimeUnit.SECONDS)) {
+                checkError();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing", e);
+        }
+    }
+
+    private void checkError() throws IOException {
+        if (error != null) {
+            throw new IOException("Unable to compress output", error);
+        }
+    }
+
+    private void compress(OutputStream out) {
+        try {
+            try {
+                GZIPOutputStream gzip = null;
+                boolean written = false;
+
+                byte[] bytes;
+                while ((bytes = blocks.take()) != END) {
+                    if (bytes == SYNC) {
+                        if (gzip != null) {
+                            gzip.finish();
+                            gzip = null;
+                        }
+                        out.flush();
+                        synced.release();
+                        continue;
+                    }
+
+                    if (gzip == null) {
+                        gzip = new GZIPOutputStream(out, BLOCK_SIZE);
+                        written = true;
+                    }
+                    gzip.write(bytes);
+                }
+
+                if (gzip == null && !written) {
+                    // An empty file is not valid gzip
+                    gzip = new GZIPOutputStream(out, BLOCK_SIZE);
+                }
+
+                if (gzip != null) {
+                    gzip.finish();
+                }
+            } finally {
+                out.close();
+            }
+        } catch (Throwable t) {
+            error = t;
+        }
+    }
+
+    private static final int BLOCK_SIZE = 1024 * 1024;
+    private static final int QUEUED_BLOCKS = 4;
+    private static final byte[] END = new byte[0];
+    private static final byte[] SYNC = new byte[0];
+}
@@ -0,0 +1,210 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.datatypes.RDFDatatype;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.sparql.core.Quad;
+
+import java.util.Random;
+
+/**
+ * Generates a dataset shaped like a VIVO site, for load testing without copying production data.
+ *
+ * The content has people, their publications and the authorships linking them, which are blank nodes, in the kb-2
+ * graph, with the types Vitro infers for them in the inferred graph. Between them they have literals of every SDB
+ * value type. The configuration has display pages in the display graph and a user account for some of the people
+ * in the user accounts graph.
+ *
+ * Each person is generated from a random number generator seeded with the seed and the person's number, so the same
+ * seed and size always give the same quads, in the same order.
+ */
+public class DatasetGenerator {
+    private final long quads;
+    private final long seed;
+
+    /**
+     * @param quads number of content quads to generate
+     */
+    public DatasetGenerator(long quads, long seed) {
+        this.quads = quads;
+        this.seed = seed;
+    }
+
+    /**
+     * Send exactly <code>quads</code> quads of content to <code>content</code>
+     */
+    public void generateContent(StreamRDF content) {
+        Limit limit = new Limit(content, quads);
+        content.start();
+        for (long person = 0; !limit.isFull(); person++) {
+            person(limit, person, new Random(seed * 31 + person));
+        }
+        content.finish();
+    }
+
+    /**
+     * Send the configuration that goes with the content to <code>configuration</code>
+     */
+    public void generateConfiguration(StreamRDF configuration) {
+        configuration.start();
+
+        Node display = uri(DISPLAY_GRAPH);
+        for (int page = 0; page < PAGES.length; page++) {
+            Node subject = uri(DISPLAY + PAGES[page] + "Page");
+            configuration.quad(new Quad(display, subject, uri(RDF_TYPE), uri(DISPLAY + "Page")));
+            configuration.quad(new Quad(display, subject, uri(DISPLAY + "title"), NodeFactory.createLiteral(PAGES[page])));
+            configuration.quad(new Quad(display, subject, uri(DISPLAY + "urlMapping"), NodeFactory.createLiteral("/" + PAGES[page])));
+            configuration.quad(new Quad(display, subject, uri(DISPLAY + "menuPosition"), literal(String.valueOf(page + 1), XSDDatatype.XSDinteger)));
+        }
+
+        Node accounts = uri(USER_ACCOUNTS_GRAPH);
+        long people = quads / QUADS_PER_PERSON + 1;
+        for (long person = 0; person < people; person += PEOPLE_PER_ACCOUNT) {
+            Random random = new Random(seed * 31 + person);
+            Node account = uri(AUTH + "user" + person);
+            configuration.quad(new Quad(accounts, account, uri(RDF_TYPE), uri(AUTH + "UserAccount")));
+            configuration.quad(new Quad(accounts, account, uri(AUTH + "emailAddress"), NodeFactory.createLiteral("user" + person + "@example.org")));
+            configuration.quad(new Quad(accounts, account, uri(AUTH + "externalAuthId"), NodeFactory.createLiteral("user" + person)));
+            configuration.quad(new Quad(accounts, account, uri(AUTH + "md5password"), NodeFactory.createLiteral(Long.toHexString(random.nextLong()))));
+            configuration.quad(new Quad(accounts, account, uri(AUTH + "loginCount"), literal(String.valueOf(random.nextInt(500)), XSDDatatype.XSDint)));
+            configuration.quad(new Quad(accounts, account, uri(AUTH + "status"), NodeFactory.createLiteral("ACTIVE")));
+            configuration.quad(new Quad(accounts, account, uri(AUTH + "proxyEditorFor"), uri(INDIVIDUAL + "n" + person)));
+        }
+
+        configuration.finish();
+    }
+
+    /**
+     * A person, with their position, publications and authorships
+     */
+    private void person(Limit out, long person, Random random) {
+        Node kb2 = uri(KB2_GRAPH);
+        Node inferred = uri(INFERRED_GRAPH);
+        Node subject = uri(INDIVIDUAL + "n" + person);
+        Node type = uri(VIVO + TYPES[random.nextInt(TYPES.length)]);
+
+        // URI
+        out.quad(new Quad(kb2, subject, uri(RDF_TYPE), type));
+        out.quad(new Quad(kb2, subject, uri(VITRO + "mostSpecificType"), type));
+        // STRING, with and without a language
+        out.quad(new Quad(kb2, subject, uri(RDFS_LABEL), random.nextBoolean() ?
+                NodeFactory.createLiteral(name(random), "en-US") : NodeFactory.createLiteral(name(random))));
+        // XSDSTRING
+        out.quad(new Quad(kb2, subject, uri(VIVO + "overview"),
+                literal("Research interests include " + WORDS[random.nextInt(WORDS.length)] + " and " +
+                        WORDS[random.nextInt(WORDS.length)] + ".", XSDDatatype.XSDstring)));
+        // INTEGER
+        out.quad(new Quad(kb2, subject, uri(VIVO + "hIndex"), literal(String.valueOf(random.nextInt(100)), XSDDatatype.XSDinteger)));
+        // DOUBLE
+        out.quad(new Quad(kb2, subject, uri(VIVO + "score"), literal(String.valueOf(random.nextDouble()), XSDDatatype.XSDdouble)));
+        // DATETIME
+        out.quad(new Quad(kb2, subject, uri(VITRO + "modTime"), literal(dateTime(random), XSDDatatype.XSDdateTime)));
+        // OTHER
+        out.quad(new Quad(kb2, subject, uri(VIVO + "orcidConfirmed"), literal(String.valueOf(random.nextBoolean()), XSDDatatype.XSDboolean)));
+
+        out.quad(new Quad(inferred, subject, uri(RDF_TYPE), uri(FOAF + "Person")));
+        out.quad(new Quad(inferred, subject, uri(RDF_TYPE), uri(FOAF + "Agent")));
+        out.quad(new Quad(inferred, subject, uri(RDF_TYPE), uri(OWL_THING)));
+
+        int publications = 1 + random.nextInt(2 * PUBLICATIONS_PER_PERSON - 1);
+        for (int i = 0; i < publications && !out.isFull(); i++) {
+            Node document = uri(INDIVIDUAL + "n" + person + "p" + i);
+            Node authorship = NodeFactory.createBlankNode("a" + person + "p" + i);
+
+            out.quad(new Quad(kb2, document, uri(RDF_TYPE), uri(BIBO + "AcademicArticle")));
+            out.quad(new Quad(kb2, document, uri(RDFS_LABEL), NodeFactory.createLiteral(title(random))));
+            out.quad(new Quad(kb2, document, uri(BIBO + "doi"), literal("10." + (1000 + random.nextInt(9000)) + "/" + random.nextInt(1000000), XSDDatatype.XSDstring)));
+            out.quad(new Quad(kb2, document, uri(VIVO + "publicationYear"), literal(String.valueOf(1970 + random.nextInt(50)), XSDDatatype.XSDgYear)));
+            out.quad(new Quad(inferred, document, uri(RDF_TYPE), uri(BIBO + "Document")));
+
+            // BNODE
+            out.quad(new Quad(kb2, subject, uri(VIVO + "relatedBy"), authorship));
+            out.quad(new Quad(kb2, document, uri(VIVO + "relatedBy"), authorship));
+            out.quad(new Quad(kb2, authorship, uri(RDF_TYPE), uri(VIVO + "Authorship")));
+            out.quad(new Quad(kb2, authorship, uri(VIVO + "relates"), subject));
+            out.quad(new Quad(kb2, authorship, uri(VIVO + "relates"), document));
+            out.quad(new Quad(kb2, authorship, uri(VIVO + "rank"), literal(String.valueOf(1 + random.nextInt(10)), XSDDatatype.XSDinteger)));
+        }
+    }
+
+    private static String name(Random random) {
+        return LAST_NAMES[random.nextInt(LAST_NAMES.length)] + ", " + FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+    }
+
+    private static String title(Random random) {
+        StringBuilder title = new StringBuilder("A study of");
+        int words = 2 + random.nextInt(6);
+        for (int i = 0; i < words; i++) {
+            title.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return title.toString();
+    }
+
+    private static String dateTime(Random random) {
+        return String.format("%04d-%02d-%02dT%02d:%02d:%02d", 2010 + random.nextInt(10), 1 + random.nextInt(12),
+                1 + random.nextInt(28), random.nextInt(24), random.nextInt(60), random.nextInt(60));
+    }
+
+    private static Node uri(String uri) {
+        return NodeFactory.createURI(uri);
+    }
+
+    private static Node literal(String lex, RDFDatatype datatype) {
+        return NodeFactory.createLiteral(lex, datatype);
+    }
+
+    /**
+     * Passes quads on until the limit is reached, then drops them
+     */
+    private static class Limit {
+        private final StreamRDF out;
+        private final long limit;
+        private long count = 0;
+
+        Limit(StreamRDF out, long limit) {
+            this.out = out;
+            this.limit = limit;
+        }
+
+        void quad(Quad quad) {
+            if (count < limit) {
+                out.quad(quad);
+                count++;
+            }
+        }
+
+        boolean isFull() {
+            return count >= limit;
+        }
+    }
+
+    public static final long DEFAULT_SEED = 1;
+
+    private static final int PUBLICATIONS_PER_PERSON = 5;
+    private static final int QUADS_PER_PERSON = 11 + PUBLICATIONS_PER_PERSON * 11;
+    private static final int PEOPLE_PER_ACCOUNT = 100;
+
+    private static final String KB2_GRAPH = "http://vitro.mannlib.cornell.edu/default/vitro-kb-2";
+    private static final String INFERRED_GRAPH = "http://vitro.mannlib.cornell.edu/default/vitro-kb-inf";
+    private static final String DISPLAY_GRAPH = "http://vitro.mannlib.cornell.edu/default/vitro-kb-displayMetadata";
+    private static final String USER_ACCOUNTS_GRAPH = "http://vitro.mannlib.cornell.edu/default/vitro-kb-userAccounts";
+
+    private static final String INDIVIDUAL = "http://vivo.example.org/individual/";
+    private static final String RDF_TYPE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
+    private static final String RDFS_LABEL = "http://www.w3.org/2000/01/rdf-schema#label";
+    private static final String OWL_THING = "http://www.w3.org/2002/07/owl#Thing";
+    private static final String FOAF = "http://xmlns.com/foaf/0.1/";
+    private static final String BIBO = "http://purl.org/ontology/bibo/";
+    private static final String VIVO = "http://vivoweb.org/ontology/core#";
+    private static final String VITRO = "http://vitro.mannlib.cornell.edu/ns/vitro/0.7#";
+    private static final String DISPLAY = "http://vitro.mannlib.cornell.edu/ontologies/display/1.1#";
+    private static final String AUTH = "http://vitro.mannlib.cornell.edu/ns/vitro/authorization#";
+
+    private static final String[] TYPES = { "FacultyMember", "Librarian", "NonAcademic", "Postdoc", "EmeritusProfessor" };
+    private static final String[] PAGES = { "home", "people", "research", "organizations", "events", "capability" };
+    private static final String[] FIRST_NAMES = { "Ada", "Alan", "Barbara", "Claude", "Donald", "Edsger", "Frances", "Grace", "John", "Leslie", "Margaret", "Tim" };
+    private static final String[] LAST_NAMES = { "Allen", "Backus", "Hopper", "Knuth", "Lamport", "Liskov", "Lovelace", "McCarthy", "Shannon", "Turing" };
+    private static final String[] WORDS = { "graphs", "ontologies", "linked data", "semantics", "scholarship", "networks", "proteins", "climate", "libraries", "learning", "citations", "genomes" };
+}
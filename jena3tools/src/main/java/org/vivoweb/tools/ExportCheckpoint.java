@@ -0,0 +1,107 @@
+package org.vivoweb.tools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Point that a sharded SDB export has safely reached: the key of the last quad written, the shard being written and
+ * its length at that point, and the shards already completed.
+ *
+ * Saved as a properties file alongside the shards, e.g. content.checkpoint, replacing the previous checkpoint in a
+ * single rename so that there is always a complete one to resume from.
+ */
+public class ExportCheckpoint {
+    public QuadKey key;
+    public int shard;
+    public long offset;
+    public long quads;
+    public long bytes;
+    public final List<ShardManifest.Shard> completed = new ArrayList<>();
+
+    /**
+     * Checkpoint file for the shards of <code>dump</code>, e.g. content.checkpoint for content.nq.gz
+     */
+    public static File fileFor(File dump) {
+        String name = dump.getName();
+        int dot = name.indexOf('.');
+        return new File(dump.getAbsoluteFile().getParentFile(), (dot < 0 ? name : name.substring(0, dot)) + EXTENSION);
+    }
+
+    public static ExportCheckpoint read(File file) throws IOException {
+        Properties props = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            props.load(in);
+        } finally {
+            in.close();
+        }
+
+        try {
+            ExportCheckpoint checkpoint = new ExportCheckpoint();
+            if (props.getProperty(PROPERTY_KEY) != null) {
+                String[] key = props.getProperty(PROPERTY_KEY).split(",");
+                checkpoint.key = new QuadKey(Long.parseLong(key[0]), Long.parseLong(key[1]),
+                        Long.parseLong(key[2]), Long.parseLong(key[3]));
+            }
+
+            checkpoint.shard = Integer.parseInt(props.getProperty(PROPERTY_SHARD));
+            checkpoint.offset = Long.parseLong(props.getProperty(PROPERTY_OFFSET));
+            checkpoint.quads = Long.parseLong(props.getProperty(PROPERTY_QUADS));
+            checkpoint.bytes = Long.parseLong(props.getProperty(PROPERTY_BYTES));
+
+            for (int i = 0; i < checkpoint.shard; i++) {
+                String[] shard = props.getProperty(PROPERTY_COMPLETED + i).split(",");
+                checkpoint.completed.add(new ShardManifest.Shard(shard[0], Long.parseLong(shard[1]), shard[2]));
+            }
+
+            return checkpoint;
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid checkpoint " + file.getAbsolutePath(), e);
+        }
+    }
+
+    public void write(File file) throws IOException {
+        Properties props = new Properties();
+        if (key != null) {
+            props.setProperty(PROPERTY_KEY, key.g + "," + key.s + "," + key.p + "," + key.o);
+        }
+
+        props.setProperty(PROPERTY_SHARD, String.valueOf(shard));
+        props.setProperty(PROPERTY_OFFSET, String.valueOf(offset));
+        props.setProperty(PROPERTY_QUADS, String.valueOf(quads));
+        props.setProperty(PROPERTY_BYTES, String.valueOf(bytes));
+
+        for (int i = 0; i < completed.size(); i++) {
+            ShardManifest.Shard shard = completed.get(i);
+            props.setProperty(PROPERTY_COMPLETED + i, shard.name + "," + shard.quads + "," + shard.checksum);
+        }
+
+        File temp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            props.store(out, "Export checkpoint");
+        } finally {
+            out.close();
+        }
+
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static final String EXTENSION = ".checkpoint";
+
+    private static final String PROPERTY_KEY = "key";
+    private static final String PROPERTY_SHARD = "shard";
+    private static final String PROPERTY_OFFSET = "offset";
+    private static final String PROPERTY_QUADS = "quads";
+    private static final String PROPERTY_BYTES = "bytes";
+    private static final String PROPERTY_COMPLETED = "completed.";
+}
@@ -0,0 +1,148 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+import org.apache.jena.sparql.core.Quad;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Selects graphs by URI, from the graphs to include and the graphs to exclude. Either may be a pattern, in which
+ * <code>*</code> matches any run of characters, e.g. <code>http://vitro.mannlib.cornell.edu/default/*</code>.
+ *
+ * A graph is selected if it matches one of the includes, or there are none, and doesn't match any of the excludes.
+ * The default graph is matched by its URI, <code>urn:x-arq:DefaultGraph</code>.
+ */
+public class GraphFilter {
+    private final List<String> includes;
+    private final List<Pattern> includePatterns = new ArrayList<>();
+    private final List<Pattern> excludePatterns = new ArrayList<>();
+
+    public GraphFilter(List<String> includes, List<String> excludes) {
+        this.includes = new ArrayList<>(includes);
+        for (String include : includes) {
+            includePatterns.add(toPattern(include));
+        }
+        for (String exclude : excludes) {
+            excludePatterns.add(toPattern(exclude));
+        }
+    }
+
+    /**
+     * Filter that selects every graph
+     */
+    public static GraphFilter all() {
+        return new GraphFilter(new ArrayList<>(), new ArrayList<>());
+    }
+
+    public boolean selectsAll() {
+        return includePatterns.isEmpty() && excludePatterns.isEmpty();
+    }
+
+    public boolean accepts(Node graph) {
+        if (Quad.isDefaultGraph(graph)) {
+            return accepts(Quad.defaultGraphIRI.getURI());
+        }
+
+        return graph.isURI() && accepts(graph.getURI());
+    }
+
+    public boolean accepts(String graph) {
+        boolean included = includePatterns.isEmpty();
+        for (Pattern include : includePatterns) {
+            if (include.matcher(graph).matches()) {
+                included = true;
+                break;
+            }
+        }
+
+        if (!included) {
+            return false;
+        }
+
+        for (Pattern exclude : excludePatterns) {
+            if (exclude.matcher(graph).matches()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Whether an include selects the default graph. Triples are exported from the named graphs, as for the union
+     * model, and from the default graph only when it is asked for.
+     */
+    public boolean includesDefaultGraph() {
+        return !includePatterns.isEmpty() && accepts(Quad.defaultGraphIRI);
+    }
+
+    /**
+     * The named graphs selected, when they are all given exactly, so that they can be read without first listing the
+     * graphs of the store. Null if any include is a pattern, or there are none. The default graph is left out, as it
+     * is read separately.
+     */
+    public List<Node> getExactGraphs() {
+        if (includes.isEmpty()) {
+            return null;
+        }
+
+        List<Node> graphs = new ArrayList<>();
+        for (String include : includes) {
+            if (include.contains(WILDCARD)) {
+                return null;
+            }
+
+            if (accepts(include) && !Quad.defaultGraphIRI.getURI().equals(include)) {
+                graphs.add(NodeFactory.createURI(include));
+            }
+        }
+
+        return graphs;
+    }
+
+    /**
+     * Passes on the quads of the selected graphs, and the triples if the default graph is selected
+     */
+    public StreamRDF filter(StreamRDF other) {
+        if (selectsAll()) {
+            return other;
+        }
+
+        final boolean defaultGraph = accepts(Quad.defaultGraphIRI);
+        return new StreamRDFWrapper(other) {
+            @Override
+            public void triple(Triple triple) {
+                if (defaultGraph) {
+                    super.triple(triple);
+                }
+            }
+
+            @Override
+            public void quad(Quad quad) {
+                if (quad.isTriple() ? defaultGraph : accepts(quad.getGraph())) {
+                    super.quad(quad);
+                }
+            }
+        };
+    }
+
+    private static Pattern toPattern(String graph) {
+        StringBuilder regex = new StringBuilder();
+        for (String part : graph.split(Pattern.quote(WILDCARD), -1)) {
+            if (regex.length() > 0) {
+                regex.append(".*");
+            }
+            regex.append(Pattern.quote(part));
+        }
+
+        return Pattern.compile(regex.toString());
+    }
+
+    private static final String WILDCARD = "*";
+}
@@ -0,0 +1,67 @@
+package org.vivoweb.tools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Records how far an SDB import has got: the number of quads of the dump, in the order they are read, that have been
+ * committed.
+ *
+ * Saved as a properties file alongside the dump, e.g. content.journal for content.nq, after each commit, and replaced
+ * by a single rename so that there is always a complete journal to resume from.
+ */
+public class ImportJournal {
+    /**
+     * Journal file for <code>dump</code>, e.g. content.journal for content.nq.gz or content.manifest
+     */
+    public static File fileFor(File dump) {
+        String name = dump.getName();
+        int dot = name.indexOf('.');
+        return new File(dump.getAbsoluteFile().getParentFile(), (dot < 0 ? name : name.substring(0, dot)) + EXTENSION);
+    }
+
+    /**
+     * @return the number of quads committed
+     */
+    public static long read(File file) throws IOException {
+        Properties props = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            props.load(in);
+        } finally {
+            in.close();
+        }
+
+        try {
+            return Long.parseLong(props.getProperty(PROPERTY_QUADS));
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid import journal " + file.getAbsolutePath(), e);
+        }
+    }
+
+    public static void write(File file, long quads) throws IOException {
+        Properties props = new Properties();
+        props.setProperty(PROPERTY_QUADS, String.valueOf(quads));
+
+        File temp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            props.store(out, "Import journal");
+        } finally {
+            out.close();
+        }
+
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static final String EXTENSION = ".journal";
+
+    private static final String PROPERTY_QUADS = "quads";
+}
@@ -7,6 +7,13 @@ import org.apache.log4j.Logger;
 import org.apache.jena.riot.RDFFormat;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
 
 public class JenaCli {
     static {
@@ -22,6 +29,8 @@ public class JenaCli {
             System.err.println("");
             System.err.println("Export: java -jar jena3tools.jar -e -d <home dir>");
             System.err.println("Import: java -jar jena3tools.jar -i -d <home dir>");
+            System.err.println("Generate: java -jar jena3tools.jar -g <quads> -d <home dir>");
+            System.err.println("Migrate: java -jar jena3tools.jar --migrate <target home dir> -d <home dir>");
             System.exit(1);
         }
 
@@ -30,8 +39,34 @@ public class JenaCli {
             System.exit(1);
         }
 
+        if (options.generateMode) {
+            generate(options);
+            System.exit(0);
+        }
+
         ApplicationStores applicationStores = new ApplicationStores(options.homeDir, options.outputFormat);
+        applicationStores.setPageSize(options.pageSize);
+        applicationStores.setKeysetPaging(options.keysetPaging);
+        applicationStores.setStreaming(options.streaming);
+        applicationStores.setSpillThreshold(options.spillThreshold);
+        applicationStores.setSortThreshold(options.sortThreshold);
+        applicationStores.setThreads(options.threads);
+        applicationStores.setPartitionByGraph(options.partitionByGraph);
+        applicationStores.setPartitionFiles(options.partitionFiles);
+        applicationStores.setNodeCacheSize(options.nodeCacheSize);
+        applicationStores.setInternSize(options.internSize);
+        applicationStores.setBatchSize(options.batchSize);
+        applicationStores.setShardQuads(options.shardQuads);
+        applicationStores.setShardBytes(options.shardBytes);
+        applicationStores.setResume(options.resume);
+        applicationStores.setCheckpointInterval(options.checkpointInterval);
+        applicationStores.setGraphFilter(new GraphFilter(options.graphs, options.excludeGraphs));
+        applicationStores.setProgressInterval(options.progressInterval);
+        if (options.metricsFile != null) {
+            applicationStores.setMetricsFile(new File(options.metricsFile), options.metricsPrometheus);
+        }
 
+        boolean succeeded = false;
         try {
             File dumpDir = Utils.resolveFile(options.homeDir, "dumps");
             if (dumpDir.exists()) {
@@ -46,13 +81,62 @@ public class JenaCli {
                 }
             }
 
-            File contentDump = Utils.resolveFile(options.homeDir, "dumps/content." + options.outputString);
-            File configurationDump = Utils.resolveFile(options.homeDir, "dumps/configuration." +
-                    options.outputString);
+            String extension = options.outputString + (options.compress ? Utils.GZIP_EXTENSION : "");
+            File contentDump = Utils.resolveFile(options.homeDir, "dumps/content." + extension);
+            File configurationDump = Utils.resolveFile(options.homeDir, "dumps/configuration." + extension);
+
+            if (options.importMode) {
+                // Import whichever dump is present, compressed or not, the language being detected from the file
+                String[] extensions = options.outputSpecified ? new String[] { options.outputString } : DUMP_EXTENSIONS;
+                contentDump = findDump(options.homeDir, "content", contentDump, extensions);
+                configurationDump = findDump(options.homeDir, "configuration", configurationDump, extensions);
+
+                // Or the shards of a sharded export
+                File contentManifest = ShardManifest.fileFor(contentDump);
+                if (!contentDump.exists() && contentManifest.exists()) {
+                    contentDump = contentManifest;
+                }
+            }
+
+            if (options.exportMode && options.delta) {
+                // Patches are named by the time of the export, so that they sort in the order they are applied
+                String patchName = "-" + new SimpleDateFormat(PATCH_DATE_FORMAT).format(new Date()) +
+                        QuadDelta.PATCH_EXTENSION + (options.compress ? Utils.GZIP_EXTENSION : "");
+
+                System.out.println("Writing Configuration Delta");
+                applicationStores.writeConfigurationDelta(
+                        Utils.resolveFile(options.homeDir, "dumps/configuration" + QuadDelta.SNAPSHOT_EXTENSION),
+                        Utils.resolveFile(options.homeDir, "dumps/configuration" + patchName));
+
+                System.out.println("Writing Content Delta");
+                applicationStores.writeContentDelta(
+                        Utils.resolveFile(options.homeDir, "dumps/content" + QuadDelta.SNAPSHOT_EXTENSION),
+                        Utils.resolveFile(options.homeDir, "dumps/content" + patchName));
+
+                applicationStores.printSummary();
+                System.out.println("Export complete");
+            } else if (options.importMode && options.delta) {
+                List<File> configurationPatches = findPatches(dumpDir, "configuration");
+                List<File> contentPatches = findPatches(dumpDir, "content");
+                if (configurationPatches.isEmpty() && contentPatches.isEmpty()) {
+                    System.err.println("No patches found in dumps directory");
+                    System.exit(1);
+                }
+
+                System.out.println("Applying Configuration Patches");
+                applicationStores.applyConfigurationDelta(configurationPatches,
+                        Utils.resolveFile(options.homeDir, "dumps/configuration" + APPLIED_EXTENSION));
+
+                System.out.println("Applying Content Patches");
+                applicationStores.applyContentDelta(contentPatches,
+                        Utils.resolveFile(options.homeDir, "dumps/content" + APPLIED_EXTENSION));
 
-            if (options.exportMode) {
-                if (!options.force) {
-                    if (contentDump.exists() || configurationDump.exists()) {
+                applicationStores.printSummary();
+                System.out.println("Import complete");
+            } else if (options.exportMode) {
+                if (!options.force && !options.resume) {
+                    if (contentDump.exists() || configurationDump.exists() ||
+                            Utils.numberedFile(contentDump, 0).exists() || ShardManifest.fileFor(contentDump).exists()) {
                         System.err.println("Dumps directory contains previous export");
                         System.exit(1);
                     }
@@ -64,9 +148,10 @@ public class JenaCli {
                 System.out.println("Writing Content");
                 applicationStores.writeContent(contentDump);
 
+                applicationStores.printSummary();
                 System.out.println("Export complete");
             } else if (options.importMode) {
-                if (!applicationStores.isEmpty()) {
+                if (!options.resume && !applicationStores.isEmpty()) {
                     System.err.println("Triple store(s) contain existing values");
                     System.exit(1);
                 }
@@ -76,19 +161,56 @@ public class JenaCli {
                     System.exit(1);
                 }
 
-                System.out.println("Reading Configuration");
-                applicationStores.readConfiguration(configurationDump);
+                // A content import journal is only written once the configuration has been read
+                if (!options.resume || !ImportJournal.fileFor(contentDump).exists()) {
+                    System.out.println("Reading Configuration");
+                    applicationStores.readConfiguration(configurationDump);
+                }
 
                 System.out.println("Reading Content");
                 applicationStores.readContent(contentDump);
 
+                applicationStores.printSummary();
                 System.out.println("Import complete");
+            } else if (options.migrateMode) {
+                if (!isValidHomeDir(options.targetDir)) {
+                    System.err.println("Can't find a valid target home dir at " + options.targetDir);
+                    System.exit(1);
+                }
+
+                ApplicationStores targetStores = new ApplicationStores(options.targetDir, options.outputFormat);
+                try {
+                    targetStores.setBatchSize(options.batchSize);
+
+                    if (!targetStores.isEmpty()) {
+                        System.err.println("Target triple store(s) contain existing values");
+                        System.exit(1);
+                    }
+
+                    System.out.println("Migrating Configuration");
+                    applicationStores.migrateConfiguration(targetStores);
+
+                    System.out.println("Migrating Content");
+                    applicationStores.migrateContent(targetStores);
+                } finally {
+                    targetStores.close();
+                }
+
+                applicationStores.printSummary();
+                System.out.println("Migration complete");
             }
 
-            System.exit(0);
+            succeeded = true;
         } finally {
-            applicationStores.close();
+            try {
+                // Whether or not the run succeeded, so that a failed run is seen as one
+                applicationStores.writeMetrics(succeeded);
+            } finally {
+                applicationStores.close();
+            }
         }
+
+        System.exit(0);
     }
 
     private static Options parseArguments(String[] arg) {
@@ -111,6 +233,21 @@ public class JenaCli {
                     if (i < arg.length - 1) {
                         i++;
                         options.outputString = arg[i];
+                        options.outputSpecified = true;
+                    }
+                }
+
+                if ("--page-size".equalsIgnoreCase(arg[i])) {
+                    if (i < arg.length - 1) {
+                        i++;
+                        options.pageSizeString = arg[i];
+                    }
+                }
+
+                if ("--paging".equalsIgnoreCase(arg[i])) {
+                    if (i < arg.length - 1) {
+                        i++;
+                        options.pagingString = arg[i];
                     }
                 }
 
@@ -120,12 +257,166 @@ public class JenaCli {
                     options.exportMode = true;
                 }
 
+                if ("-g".equalsIgnoreCase(arg[i]) ||
+                    "--generate".equalsIgnoreCase(arg[i])
+                   ) {
+                    options.generateMode = true;
+                    if (i < arg.length - 1) {
+                        i++;
+                        options.generateString = arg[i];
+                    }
+                }
+
+                if ("--migrate".equalsIgnoreCase(arg[i])) {
+                    options.migrateMode = true;
+                    if (i < arg.length - 1) {
+                        i++;
+                        options.targetDir = arg[i];
+                    }
+                }
+
+                if ("--seed".equalsIgnoreCase(arg[i])) {
+                    if (i < arg.length - 1) {
+                        i++;
+                        options.seedString = arg[i];
+                    }
+                }
+
                 if ("-i".equalsIgnoreCase(arg[i]) ||
                     "--import".equalsIgnoreCase(arg[i])
                    ) {
                     options.importMode = true;
                 }
 
+                if ("--spill-threshold".equalsIgnoreCase(arg[i])) {
+                    if (i < arg.length - 1) {
+                        i++;
+                        options.spillThresholdString = arg[i];
+                    }
+                }
+
+                if ("--sort-threshold".equalsIgnoreCase(arg[i])) {
+                    if (i < arg.length - 1) {
+                        i++;
+                        options.sortThresholdString = arg[i];
+                    }
+                }
+
+                if ("-t".equalsIgnoreCase(arg[i]) ||
+                    "--threads".equalsIgnoreCase(arg[i])
+                   ) {
+                    if (i < arg.length - 1) {
+                        i++;
+                        options.threadsString = arg[i];
+                    }
+                }
+
+                if ("--partition".equalsIgnoreCase(arg[i])) {
+                    if (i < arg.length - 1) {
+                        i++;
+                        options.partitionString = arg[i];
+                    }
+                }
+
+                if ("--partition-files".equalsIgnoreCase(arg[i])) {
+                    options.partitionFiles = true;
+                }
+
+                if ("--node-cache".equalsIgnoreCase(arg[i])) {
+                    if (i < arg.length - 1) {
+                        i++;
+                        options.nodeCacheString = arg[i];
+                    }
+                }
+
+                if ("--intern".equalsIgnoreCase(arg[i])) {
+                    if (i < arg.length - 1) {
+                        i++;
+                        options.internString = arg[i];
+                    }
+                }
+
+                if ("--batch-size".equalsIgnoreCase(arg[i])) {
+                    if (i < arg.length - 1) {
+                        i++;
+                        options.batchSizeString = arg[i];
+                    }
+                }
+
+                if ("-z".equalsIgnoreCase(arg[i]) ||
+                    "--compress".equalsIgnoreCase(arg[i])
+                   ) {
+                    options.compress = true;
+                }
+
+                if ("--shard-quads".equalsIgnoreCase(arg[i])) {
+                    if (i < arg.length - 1) {
+                        i++;
+                        options.shardQuadsString = arg[i];
+                    }
+                }
+
+                if ("--shard-bytes".equalsIgnoreCase(arg[i])) {
+                    if (i < arg.length - 1) {
+                        i++;
+                        options.shardBytesString = arg[i];
+                    }
+                }
+
+                if ("--resume".equalsIgnoreCase(arg[i])) {
+                    options.resume = true;
+                }
+
+                if ("--checkpoint-interval".equalsIgnoreCase(arg[i])) {
+                    if (i < arg.length - 1) {
+                        i++;
+                        options.checkpointString = arg[i];
+                    }
+                }
+
+                if ("--graph".equalsIgnoreCase(arg[i])) {
+                    if (i < arg.length - 1) {
+                        i++;
+                        options.graphs.add(arg[i]);
+                    }
+                }
+
+                if ("--exclude-graph".equalsIgnoreCase(arg[i])) {
+                    if (i < arg.length - 1) {
+                        i++;
+                        options.excludeGraphs.add(arg[i]);
+                    }
+                }
+
+                if ("--progress".equalsIgnoreCase(arg[i])) {
+                    if (i < arg.length - 1) {
+                        i++;
+                        options.progressString = arg[i];
+                    }
+                }
+
+                if ("--metrics".equalsIgnoreCase(arg[i])) {
+                    if (i < arg.length - 1) {
+                        i++;
+                        options.metricsFile = arg[i];
+                    }
+                }
+
+                if ("--metrics-format".equalsIgnoreCase(arg[i])) {
+                    if (i < arg.length - 1) {
+                        i++;
+                        options.metricsFormatString = arg[i];
+                    }
+                }
+
+                if ("--delta".equalsIgnoreCase(arg[i])) {
+                    options.delta = true;
+                }
+
+                if ("--stream".equalsIgnoreCase(arg[i])) {
+                    options.streaming = true;
+                }
+
                 if ("-f".equalsIgnoreCase(arg[i]) ||
                     "--force".equalsIgnoreCase(arg[i])
                    ) {
@@ -141,6 +432,86 @@ public class JenaCli {
         return null;
     }
 
+    /**
+     * Write a generated content and configuration dump to the dumps directory, for loading with an import
+     */
+    private static void generate(Options options) {
+        File dumpDir = Utils.resolveFile(options.homeDir, "dumps");
+        if (!dumpDir.isDirectory() && !dumpDir.mkdirs()) {
+            System.err.println("Unable to create 'dumps' directory");
+            System.exit(1);
+        }
+
+        String extension = options.outputString + (options.compress ? Utils.GZIP_EXTENSION : "");
+        File contentDump = Utils.resolveFile(options.homeDir, "dumps/content." + extension);
+        File configurationDump = Utils.resolveFile(options.homeDir, "dumps/configuration." + extension);
+
+        if (!options.force && (contentDump.exists() || configurationDump.exists())) {
+            System.err.println("Dump files present, use -f to overwrite");
+            System.exit(1);
+        }
+
+        DatasetGenerator generator = new DatasetGenerator(options.generateQuads, options.seed);
+        try {
+            System.out.println("Generating Configuration");
+            OutputStream outputStream = Utils.openOutput(configurationDump);
+            try {
+                generator.generateConfiguration(Utils.openWriterStream(outputStream, options.outputFormat));
+            } finally {
+                outputStream.close();
+            }
+
+            System.out.println("Generating Content");
+            Progress progress = new Progress("Content generation", options.progressInterval * 1000);
+            progress.setTotalQuads(options.generateQuads);
+            progress.start();
+            outputStream = Utils.openOutput(contentDump, progress);
+            try {
+                generator.generateContent(progress.count(Utils.openWriterStream(outputStream, options.outputFormat)));
+            } finally {
+                outputStream.close();
+                progress.finish();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write generated dump", e);
+        }
+
+        System.out.println("Generate complete");
+    }
+
+    /**
+     * Patches written by delta exports of one store, e.g. content-20170601-020000.patch, in the order they were written
+     */
+    private static List<File> findPatches(File dumpDir, final String name) {
+        File[] files = dumpDir.listFiles((dir, fileName) -> fileName.startsWith(name + "-") &&
+                (fileName.endsWith(QuadDelta.PATCH_EXTENSION) ||
+                fileName.endsWith(QuadDelta.PATCH_EXTENSION + Utils.GZIP_EXTENSION)));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+
+    private static File findDump(String homeDir, String name, File dump, String[] extensions) {
+        if (!dump.exists()) {
+            for (String extension : extensions) {
+                File candidate = Utils.resolveFile(homeDir, "dumps/" + name + "." + extension);
+                if (candidate.exists()) {
+                    return candidate;
+                }
+
+                candidate = Utils.resolveFile(homeDir, "dumps/" + name + "." + extension + Utils.GZIP_EXTENSION);
+                if (candidate.exists()) {
+                    return candidate;
+                }
+            }
+        }
+
+        return dump;
+    }
+
     private static boolean isValidHomeDir(String homeDir) {
         File homeDirFile = new File(homeDir);
         if (!homeDirFile.isDirectory()) {
@@ -183,9 +554,53 @@ public class JenaCli {
         public String homeDir = null;
         public boolean importMode = false;
         public boolean exportMode = false;
+        public boolean generateMode = false;
+        public boolean migrateMode = false;
+        public String targetDir = null;
+        public String generateString = null;
+        public long generateQuads = 0;
+        public String seedString = String.valueOf(DatasetGenerator.DEFAULT_SEED);
+        public long seed = DatasetGenerator.DEFAULT_SEED;
         public boolean force = false;
+        public boolean streaming = false;
+        public boolean compress = false;
+        public boolean resume = false;
+        public boolean delta = false;
+        public List<String> graphs = new ArrayList<>();
+        public List<String> excludeGraphs = new ArrayList<>();
         public String outputString = "trig";
+        public boolean outputSpecified = false;
         public RDFFormat outputFormat = RDFFormat.TRIG_BLOCKS;
+        public String pageSizeString = String.valueOf(ApplicationStores.DEFAULT_PAGE_SIZE);
+        public long pageSize = ApplicationStores.DEFAULT_PAGE_SIZE;
+        public String pagingString = "keyset";
+        public boolean keysetPaging = true;
+        public String spillThresholdString = String.valueOf(ApplicationStores.DEFAULT_SPILL_THRESHOLD);
+        public long spillThreshold = ApplicationStores.DEFAULT_SPILL_THRESHOLD;
+        public String sortThresholdString = String.valueOf(ApplicationStores.DEFAULT_SORT_THRESHOLD);
+        public long sortThreshold = ApplicationStores.DEFAULT_SORT_THRESHOLD;
+        public String threadsString = "1";
+        public int threads = 1;
+        public String partitionString = "range";
+        public boolean partitionByGraph = false;
+        public boolean partitionFiles = false;
+        public String nodeCacheString = "0";
+        public int nodeCacheSize = 0;
+        public String internString = String.valueOf(ApplicationStores.DEFAULT_INTERN_SIZE);
+        public int internSize = ApplicationStores.DEFAULT_INTERN_SIZE;
+        public String batchSizeString = String.valueOf(ApplicationStores.DEFAULT_BATCH_SIZE);
+        public long batchSize = ApplicationStores.DEFAULT_BATCH_SIZE;
+        public String shardQuadsString = "0";
+        public long shardQuads = 0;
+        public String shardBytesString = "0";
+        public long shardBytes = 0;
+        public String checkpointString = String.valueOf(ApplicationStores.DEFAULT_CHECKPOINT_INTERVAL);
+        public long checkpointInterval = ApplicationStores.DEFAULT_CHECKPOINT_INTERVAL;
+        public String progressString = String.valueOf(ApplicationStores.DEFAULT_PROGRESS_INTERVAL);
+        public long progressInterval = ApplicationStores.DEFAULT_PROGRESS_INTERVAL;
+        public String metricsFile = null;
+        public String metricsFormatString = "json";
+        public boolean metricsPrometheus = false;
 
         private boolean isValid() {
             if (StringUtils.isEmpty(homeDir)) {
@@ -204,15 +619,187 @@ public class JenaCli {
                 outputFormat = RDFFormat.RDFXML;
             } else if ("jsonld".equals(outputString)) {
                 outputFormat = RDFFormat.JSONLD;
+            } else if ("rt".equals(outputString)) {
+                // Binary RDF Thrift, which is much quicker to write and parse than the text formats
+                outputFormat = RDFFormat.RDF_THRIFT;
             } else {
                 return false;
             }
 
-            if (importMode == exportMode) {
+            try {
+                pageSize = Long.parseLong(pageSizeString);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+
+            if (pageSize < 1) {
+                return false;
+            }
+
+            try {
+                spillThreshold = Long.parseLong(spillThresholdString);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+
+            if (spillThreshold < 0) {
+                return false;
+            }
+
+            try {
+                sortThreshold = Long.parseLong(sortThresholdString);
+            } catch (NumberFormatException e) {
                 return false;
             }
 
+            if (sortThreshold < 1) {
+                return false;
+            }
+
+            try {
+                threads = Integer.parseInt(threadsString);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+
+            if (threads < 1) {
+                return false;
+            }
+
+            try {
+                nodeCacheSize = Integer.parseInt(nodeCacheString);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+
+            if (nodeCacheSize < 0) {
+                return false;
+            }
+
+            try {
+                internSize = Integer.parseInt(internString);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+
+            if (internSize < 0) {
+                return false;
+            }
+
+            try {
+                batchSize = Long.parseLong(batchSizeString);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+
+            if (batchSize < 1) {
+                return false;
+            }
+
+            try {
+                shardQuads = Long.parseLong(shardQuadsString);
+                shardBytes = Long.parseLong(shardBytesString);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+
+            if (shardQuads < 0 || shardBytes < 0) {
+                return false;
+            }
+
+            try {
+                checkpointInterval = Long.parseLong(checkpointString);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+
+            if (checkpointInterval < 0) {
+                return false;
+            }
+
+            try {
+                progressInterval = Long.parseLong(progressString);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+
+            if (progressInterval < 0) {
+                return false;
+            }
+
+            // Shards are separate documents, so need a format that labels blank nodes the same way in each
+            if ((shardQuads > 0 || shardBytes > 0) && outputFormat != RDFFormat.NQUADS) {
+                return false;
+            }
+
+            // Checkpoints are only kept for sharded exports
+            if (resume && exportMode && shardQuads == 0 && shardBytes == 0) {
+                return false;
+            }
+
+            // The import journal counts the quads loaded, which a graph filter makes different from the quads read
+            if (resume && importMode && (!graphs.isEmpty() || !excludeGraphs.isEmpty())) {
+                return false;
+            }
+
+            // A delta is a snapshot and a patch, rather than a dump that could be sharded or resumed
+            if (delta && (generateMode || migrateMode || resume || shardQuads > 0 || shardBytes > 0 || partitionFiles)) {
+                return false;
+            }
+
+            if ("range".equals(partitionString)) {
+                partitionByGraph = false;
+            } else if ("graph".equals(partitionString)) {
+                partitionByGraph = true;
+            } else {
+                return false;
+            }
+
+            if ("json".equals(metricsFormatString)) {
+                metricsPrometheus = false;
+            } else if ("prometheus".equals(metricsFormatString)) {
+                metricsPrometheus = true;
+            } else {
+                return false;
+            }
+
+            if ("keyset".equals(pagingString)) {
+                keysetPaging = true;
+            } else if ("offset".equals(pagingString)) {
+                keysetPaging = false;
+            } else {
+                return false;
+            }
+
+            if ((importMode ? 1 : 0) + (exportMode ? 1 : 0) + (generateMode ? 1 : 0) + (migrateMode ? 1 : 0) != 1) {
+                return false;
+            }
+
+            if (migrateMode && StringUtils.isEmpty(targetDir)) {
+                return false;
+            }
+
+            if (generateMode) {
+                try {
+                    generateQuads = Long.parseLong(generateString);
+                    seed = Long.parseLong(seedString);
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+
+                // The generated quads are written as they are made, so the format must be a streamable quad format
+                if (generateQuads < 0 || (outputFormat != RDFFormat.TRIG_BLOCKS && outputFormat != RDFFormat.NQUADS &&
+                        outputFormat != RDFFormat.RDF_THRIFT)) {
+                    return false;
+                }
+            }
+
             return true;
         }
     }
+
+    private static final String PATCH_DATE_FORMAT = "yyyyMMdd-HHmmss";
+    private static final String APPLIED_EXTENSION = ".applied";
+
+    private static final String[] DUMP_EXTENSIONS = { "trig", "nq", "rt", "nt", "ttl", "jsonld", "rdf" };
 }
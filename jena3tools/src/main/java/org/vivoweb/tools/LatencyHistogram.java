@@ -0,0 +1,53 @@
+package org.vivoweb.tools;
+
+/**
+ * Histogram of the time taken to read pages of the Quads table, with the number of rows they held.
+ *
+ * Pages may be read on several threads, so recording is synchronized; it happens once a page, so that is cheap.
+ */
+public class LatencyHistogram {
+    private final long[] counts = new long[BOUNDS.length + 1];
+    private long count = 0;
+    private long rows = 0;
+    private long nanos = 0;
+
+    public synchronized void record(long pageRows, long pageNanos) {
+        int bucket = 0;
+        while (bucket < BOUNDS.length && pageNanos > BOUNDS[bucket] * 1000000L) {
+            bucket++;
+        }
+
+        counts[bucket]++;
+        count++;
+        rows += pageRows;
+        nanos += pageNanos;
+    }
+
+    /**
+     * Upper bounds of the buckets in milliseconds, not counting the last bucket, which has none
+     */
+    public static long[] getBounds() {
+        return BOUNDS.clone();
+    }
+
+    /**
+     * Number of pages in each bucket, not cumulative
+     */
+    public synchronized long[] getCounts() {
+        return counts.clone();
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getRows() {
+        return rows;
+    }
+
+    public synchronized double getSeconds() {
+        return nanos / 1e9;
+    }
+
+    private static final long[] BOUNDS = { 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000 };
+}
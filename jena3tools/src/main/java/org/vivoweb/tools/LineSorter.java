@@ -0,0 +1,183 @@
+package org.vivoweb.tools;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Sorts lines of text, keeping at most <code>threshold</code> of them in memory, and merges them back in order
+ * without duplicates.
+ *
+ * When the threshold is reached, the lines are sorted and written to a temporary file as a sorted run. Merging reads
+ * the runs together, so duplicates from any of them are next to each other and are dropped by comparing each line
+ * with the one before.
+ */
+public class LineSorter implements AutoCloseable {
+    private final File directory;
+    private final String prefix;
+    private final long threshold;
+
+    private List<String> lines = new ArrayList<>();
+    private final List<File> runs = new ArrayList<>();
+
+    /**
+     * @param prefix start of the names of the temporary files, e.g. triples-
+     */
+    public LineSorter(File directory, String prefix, long threshold) {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.threshold = threshold;
+    }
+
+    public void add(String line) {
+        lines.add(line);
+        if (lines.size() >= threshold) {
+            spill();
+        }
+    }
+
+    /**
+     * Send each distinct line to <code>destination</code>, in order
+     *
+     * @return the number of distinct lines
+     */
+    public long merge(Consumer<String> destination) {
+        if (runs.isEmpty()) {
+            Collections.sort(lines);
+            long distinct = 0;
+            String previous = null;
+            for (String line : lines) {
+                if (!line.equals(previous)) {
+                    destination.accept(line);
+                    previous = line;
+                    distinct++;
+                }
+            }
+            return distinct;
+        }
+
+        if (!lines.isEmpty()) {
+            spill();
+        }
+
+        PriorityQueue<Run> merge = new PriorityQueue<>();
+        try {
+            for (File file : runs) {
+                Run run = new Run(file);
+                if (run.line != null) {
+                    merge.add(run);
+                } else {
+                    run.close();
+                }
+            }
+
+            long distinct = 0;
+            String previous = null;
+            while (!merge.isEmpty()) {
+                Run run = merge.poll();
+                if (!run.line.equals(previous)) {
+                    destination.accept(run.line);
+                    previous = run.line;
+                    distinct++;
+                }
+
+                if (run.next()) {
+                    merge.add(run);
+                } else {
+                    run.close();
+                }
+            }
+            return distinct;
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to merge sorted lines", e);
+        } finally {
+            for (Run run : merge) {
+                run.close();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (File run : runs) {
+            if (!run.delete()) {
+                run.deleteOnExit();
+            }
+        }
+        runs.clear();
+        lines.clear();
+    }
+
+    /**
+     * Write the lines held in memory to a new run, sorted and without duplicates
+     */
+    private void spill() {
+        Collections.sort(lines);
+
+        File run;
+        try {
+            run = File.createTempFile(prefix, ".sort", directory);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to create sort file in " + directory.getAbsolutePath(), e);
+        }
+        runs.add(run);
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(run), StandardCharsets.UTF_8))) {
+            String previous = null;
+            for (String line : lines) {
+                if (!line.equals(previous)) {
+                    writer.write(line);
+                    writer.write('\n');
+                    previous = line;
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write sorted lines to " + run.getAbsolutePath(), e);
+        }
+
+        lines = new ArrayList<>();
+    }
+
+    /**
+     * A sorted run being merged, positioned on its current line
+     */
+    private static class Run implements Comparable<Run> {
+        private final BufferedReader reader;
+        private String line;
+
+        Run(File file) throws IOException {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+            line = reader.readLine();
+        }
+
+        boolean next() throws IOException {
+            line = reader.readLine();
+            return line != null;
+        }
+
+        void close() {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // Only closing a temporary file, which is about to be deleted
+            }
+        }
+
+        @Override
+        public int compareTo(Run other) {
+            return line.compareTo(other.line);
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package org.vivoweb.tools;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Figures for a run, written to a file for schedulers and monitoring to pick up: the wall time of each phase, the
+ * quads, bytes and pages of each stage, a histogram of the time taken to read pages of the Quads table, and garbage
+ * collection and allocation figures, along with whether the run is still running, succeeded or failed.
+ *
+ * Written as JSON, or in the Prometheus text exposition format, e.g. for the node exporter's textfile collector.
+ * The file is rewritten every <code>interval</code> milliseconds during the run, and replaced by a single rename so
+ * that it is never seen half written.
+ */
+public class Metrics {
+    private final File file;
+    private final boolean prometheus;
+    private final List<Progress> stages;
+
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private final LatencyHistogram pageReads = new LatencyHistogram();
+
+    private String status = STATUS_RUNNING;
+
+    private Thread writer;
+
+    /**
+     * @param stages stages of the run, which are added to as it goes on
+     */
+    public Metrics(File file, boolean prometheus, List<Progress> stages) {
+        this.file = file;
+        this.prometheus = prometheus;
+        this.stages = stages;
+    }
+
+    /**
+     * Add to the wall time of a phase
+     */
+    public synchronized void addTime(String phase, long millis) {
+        Long total = phases.get(phase);
+        phases.put(phase, total == null ? millis : total + millis);
+    }
+
+    /**
+     * Status of the run, one of running, succeeded or failed
+     */
+    public synchronized void setStatus(String status) {
+        this.status = status;
+    }
+
+    public LatencyHistogram getPageReads() {
+        return pageReads;
+    }
+
+    /**
+     * Rewrite the file every <code>interval</code> milliseconds, if it is more than 0, until stopped
+     */
+    public void start(final long interval) {
+        if (interval > 0 && writer == null) {
+            writer = new Thread(() -> {
+                try {
+                    while (true) {
+                        Thread.sleep(interval);
+                        try {
+                            write();
+                        } catch (IOException e) {
+                            System.err.println("Unable to write metrics: " + e.getMessage());
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    // Run finished
+                }
+            }, "metrics");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * Stop rewriting the file, and write it a final time
+     */
+    public void stop() throws IOException {
+        if (writer != null) {
+            writer.interrupt();
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+        }
+
+        write();
+    }
+
+    public synchronized void write() throws IOException {
+        File temp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8));
+        try {
+            out.print(prometheus ? toPrometheus() : toJson());
+        } finally {
+            out.close();
+        }
+
+        if (out.checkError()) {
+            throw new IOException("Unable to write metrics " + temp.getAbsolutePath());
+        }
+
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Wall time of the phases recorded, followed by each stage
+     */
+    private Map<String, Long> getPhases() {
+        Map<String, Long> all = new LinkedHashMap<>(phases);
+        for (Progress stage : stages) {
+            all.put(name(stage), stage.getMillis());
+        }
+        return all;
+    }
+
+    private String toJson() {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"timestamp\": ").append(System.currentTimeMillis() / 1000).append(",\n");
+        json.append("  \"status\": \"").append(status).append("\",\n");
+
+        json.append("  \"phases\": {");
+        String separator = "\n";
+        for (Map.Entry<String, Long> phase : getPhases().entrySet()) {
+            json.append(separator).append("    \"").append(phase.getKey()).append("\": ").append(phase.getValue() / 1000.0);
+            separator = ",\n";
+        }
+        json.append("\n  },\n");
+
+        json.append("  \"stages\": {");
+        separator = "\n";
+        for (Progress stage : stages) {
+            json.append(separator).append("    \"").append(name(stage)).append("\": {")
+                    .append("\"seconds\": ").append(stage.getMillis() / 1000.0)
+                    .append(", \"quads\": ").append(stage.getQuads())
+                    .append(", \"bytes\": ").append(stage.getBytes())
+                    .append(", \"pages\": ").append(stage.getPages())
+                    .append("}");
+            separator = ",\n";
+        }
+        json.append("\n  },\n");
+
+        long[] bounds = LatencyHistogram.getBounds();
+        long[] counts = pageReads.getCounts();
+        json.append("  \"pageReads\": {")
+                .append("\"count\": ").append(pageReads.getCount())
+                .append(", \"rows\": ").append(pageReads.getRows())
+                .append(", \"seconds\": ").append(pageReads.getSeconds())
+                .append(", \"buckets\": {");
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            json.append(i == 0 ? "" : ", ").append('"').append(i < bounds.length ? String.valueOf(bounds[i] / 1000.0) : "+Inf")
+                    .append("\": ").append(cumulative);
+        }
+        json.append("}},\n");
+
+        json.append("  \"gc\": {");
+        separator = "\n";
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            json.append(separator).append("    \"").append(escape(gc.getName())).append("\": {")
+                    .append("\"collections\": ").append(gc.getCollectionCount())
+                    .append(", \"seconds\": ").append(gc.getCollectionTime() / 1000.0)
+                    .append("}");
+            separator = ",\n";
+        }
+        json.append("\n  },\n");
+
+        Runtime runtime = Runtime.getRuntime();
+        json.append("  \"allocatedBytes\": ").append(getAllocatedBytes()).append(",\n");
+        json.append("  \"heapUsedBytes\": ").append(runtime.totalMemory() - runtime.freeMemory()).append(",\n");
+        json.append("  \"heapMaxBytes\": ").append(runtime.maxMemory()).append("\n");
+        json.append("}\n");
+
+        return json.toString();
+    }
+
+    private String toPrometheus() {
+        StringBuilder text = new StringBuilder();
+
+        text.append("# HELP jenatools_run_status Status of the run, 1 for the current one\n");
+        text.append("# TYPE jenatools_run_status gauge\n");
+        for (String state : new String[] { STATUS_RUNNING, STATUS_SUCCEEDED, STATUS_FAILED }) {
+            text.append("jenatools_run_status{status=\"").append(state).append("\"} ")
+                    .append(state.equals(status) ? 1 : 0).append('\n');
+        }
+
+        text.append("# HELP jenatools_phase_seconds Wall time of each phase of the run\n");
+        text.append("# TYPE jenatools_phase_seconds gauge\n");
+        for (Map.Entry<String, Long> phase : getPhases().entrySet()) {
+            text.append("jenatools_phase_seconds{phase=\"").append(phase.getKey()).append("\"} ")
+                    .append(phase.getValue() / 1000.0).append('\n');
+        }
+
+        text.append("# HELP jenatools_quads Quads read or written by each stage\n");
+        text.append("# TYPE jenatools_quads gauge\n");
+        for (Progress stage : stages) {
+            text.append("jenatools_quads{stage=\"").append(name(stage)).append("\"} ").append(stage.getQuads()).append('\n');
+        }
+
+        text.append("# HELP jenatools_bytes Bytes read or written by each stage\n");
+        text.append("# TYPE jenatools_bytes gauge\n");
+        for (Progress stage : stages) {
+            text.append("jenatools_bytes{stage=\"").append(name(stage)).append("\"} ").append(stage.getBytes()).append('\n');
+        }
+
+        text.append("# HELP jenatools_pages Pages of the Quads table read by each stage\n");
+        text.append("# TYPE jenatools_pages gauge\n");
+        for (Progress stage : stages) {
+            text.append("jenatools_pages{stage=\"").append(name(stage)).append("\"} ").append(stage.getPages()).append('\n');
+        }
+
+        long[] bounds = LatencyHistogram.getBounds();
+        long[] counts = pageReads.getCounts();
+        text.append("# HELP jenatools_page_read_seconds Time taken to read each page of the Quads table\n");
+        text.append("# TYPE jenatools_page_read_seconds histogram\n");
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            text.append("jenatools_page_read_seconds_bucket{le=\"")
+                    .append(i < bounds.length ? String.valueOf(bounds[i] / 1000.0) : "+Inf")
+                    .append("\"} ").append(cumulative).append('\n');
+        }
+        text.append("jenatools_page_read_seconds_sum ").append(pageReads.getSeconds()).append('\n');
+        text.append("jenatools_page_read_seconds_count ").append(pageReads.getCount()).append('\n');
+
+        text.append("# HELP jenatools_page_rows_total Rows read from the Quads table in pages\n");
+        text.append("# TYPE jenatools_page_rows_total counter\n");
+        text.append("jenatools_page_rows_total ").append(pageReads.getRows()).append('\n');
+
+        text.append("# HELP jenatools_gc_collections_total Garbage collections by each collector\n");
+        text.append("# TYPE jenatools_gc_collections_total counter\n");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            text.append("jenatools_gc_collections_total{gc=\"").append(escape(gc.getName())).append("\"} ")
+                    .append(gc.getCollectionCount()).append('\n');
+        }
+
+        text.append("# HELP jenatools_gc_seconds_total Time spent in garbage collection by each collector\n");
+        text.append("# TYPE jenatools_gc_seconds_total counter\n");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            text.append("jenatools_gc_seconds_total{gc=\"").append(escape(gc.getName())).append("\"} ")
+                    .append(gc.getCollectionTime() / 1000.0).append('\n');
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        text.append("# HELP jenatools_allocated_bytes Bytes allocated by the threads still running\n");
+        text.append("# TYPE jenatools_allocated_bytes gauge\n");
+        text.append("jenatools_allocated_bytes ").append(getAllocatedBytes()).append('\n');
+        text.append("# HELP jenatools_heap_used_bytes Heap in use\n");
+        text.append("# TYPE jenatools_heap_used_bytes gauge\n");
+        text.append("jenatools_heap_used_bytes ").append(runtime.totalMemory() - runtime.freeMemory()).append('\n');
+        text.append("# HELP jenatools_heap_max_bytes Maximum heap size\n");
+        text.append("# TYPE jenatools_heap_max_bytes gauge\n");
+        text.append("jenatools_heap_max_bytes ").append(runtime.maxMemory()).append('\n');
+
+        return text.toString();
+    }
+
+    /**
+     * Bytes allocated by the threads that are still running, where the JVM can measure it, otherwise -1.
+     * Threads that have finished, such as those of a parser pool, are not included.
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+
+        com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+        if (!sunThreads.isThreadAllocatedMemorySupported() || !sunThreads.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+
+        long total = 0;
+        for (long allocated : sunThreads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (allocated > 0) {
+                total += allocated;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Stage name as a metric label, e.g. content_export for Content export
+     */
+    private static String name(Progress stage) {
+        return stage.getStage().toLowerCase().replace(' ', '_');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    public static final String STATUS_RUNNING = "running";
+    public static final String STATUS_SUCCEEDED = "succeeded";
+    public static final String STATUS_FAILED = "failed";
+}
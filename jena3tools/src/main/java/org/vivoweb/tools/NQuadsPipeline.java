@@ -0,0 +1,323 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.lang.LabelToNode;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sparql.core.Quad;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads an N-Quads or N-Triples file with a pipeline of threads.
+ *
+ * A reader thread memory maps the file, or decompresses it if it is compressed, and cuts it into chunks that end
+ * at a line break. A pool of parser threads turns each chunk into a batch of quads, and the calling thread sends
+ * the batches to the destination, so the destination is only ever called from one thread.
+ * The queues between the stages are bounded, so the reader and parsers wait when the destination falls behind.
+ *
+ * Every line is a complete statement, so the chunks can be parsed independently, in any order. Blank node labels
+ * are hashed with a seed shared by all of the chunks, so a label gives the same blank node wherever it appears.
+ */
+public class NQuadsPipeline {
+    private final int threads;
+    private final int chunkSize;
+    private Progress progress;
+
+    public NQuadsPipeline(int threads) {
+        this(threads, DEFAULT_CHUNK_SIZE);
+    }
+
+    public NQuadsPipeline(int threads, int chunkSize) {
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Count the bytes read from the files, before decompression, may be null
+     */
+    public void setProgress(Progress progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * @return the number of quads loaded
+     */
+    public long load(File input, Lang lang, StreamRDF destination) {
+        return load(Collections.singletonList(input), lang, destination);
+    }
+
+    /**
+     * Load several files as if they were one, so that blank node labels are shared between them
+     *
+     * @return the number of quads loaded
+     */
+    public long load(final List<File> inputs, final Lang lang, StreamRDF destination) {
+        final BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(threads * 2);
+        final BlockingQueue<Batch> batches = new ArrayBlockingQueue<>(threads * 2);
+        final UUID seed = UUID.randomUUID();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        try {
+            executor.execute(() -> split(inputs, chunks, batches));
+            for (int i = 0; i < threads; i++) {
+                executor.execute(() -> parse(lang, seed, chunks, batches));
+            }
+
+            long count = 0;
+            int complete = 0;
+
+            destination.start();
+            while (complete < threads) {
+                Batch batch = batches.take();
+                if (batch.error != null) {
+                    throw new RuntimeException("Unable to read content dump", batch.error);
+                }
+
+                if (batch.quads == null) {
+                    complete++;
+                    continue;
+                }
+
+                for (Quad quad : batch.quads) {
+                    destination.quad(quad);
+                }
+                count += batch.quads.size();
+            }
+            destination.finish();
+
+            return count;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while reading content dump", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Cut the files into chunks of whole lines, followed by one end marker for each parser
+     */
+    private void split(List<File> inputs, BlockingQueue<Chunk> chunks, BlockingQueue<Batch> batches) {
+        try {
+            for (File input : inputs) {
+                if (Utils.isCompressed(input)) {
+                    splitStream(input, chunks);
+                } else {
+                    splitMapped(input, chunks);
+                }
+            }
+
+            for (int i = 0; i < threads; i++) {
+                chunks.put(Chunk.END);
+            }
+        } catch (InterruptedException e) {
+            // Loading has been abandoned
+        } catch (Throwable t) {
+            try {
+                batches.put(new Batch(t));
+            } catch (InterruptedException e) {
+                // Loading has already been abandoned
+            }
+        }
+    }
+
+    private void splitMapped(File input, BlockingQueue<Chunk> chunks) throws IOException, InterruptedException {
+        RandomAccessFile file = new RandomAccessFile(input, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            long position = 0;
+
+            while (position < size) {
+                long length = Math.min(MAP_SIZE, size - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean last = position + length == size;
+
+                int start = 0;
+                while (start < length) {
+                    int end = (int) Math.min(start + chunkSize, length);
+                    if (end < length || !last) {
+                        end = lineEnd(buffer, start, end);
+                        if (end < 0) {
+                            if (!last) {
+                                // The rest of the mapped region is an incomplete line
+                                break;
+                            }
+
+                            // The file does not end with a line break
+                            end = (int) length;
+                        }
+                    }
+
+                    byte[] bytes = new byte[end - start];
+                    buffer.position(start);
+                    buffer.get(bytes);
+                    chunks.put(new Chunk(bytes));
+                    if (progress != null) {
+                        progress.addBytes(bytes.length);
+                    }
+                    start = end;
+                }
+
+                if (start == 0) {
+                    throw new IOException("Line longer than " + MAP_SIZE + " bytes at offset " + position);
+                }
+                position += start;
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Compressed files can't be mapped, so are read through a stream, carrying any incomplete line over to the
+     * next chunk
+     */
+    private void splitStream(File input, BlockingQueue<Chunk> chunks) throws IOException, InterruptedException {
+        InputStream inputStream = Utils.openInput(input, progress);
+        try {
+            byte[] buffer = new byte[chunkSize];
+            int length = 0;
+
+            int read;
+            while ((read = inputStream.read(buffer, length, buffer.length - length)) >= 0) {
+                length += read;
+                if (length < buffer.length) {
+                    continue;
+                }
+
+                int end = length;
+                while (end > 0 && buffer[end - 1] != '\n') {
+                    end--;
+                }
+
+                if (end == 0) {
+                    // No line break yet, so make room for more of the line
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    continue;
+                }
+
+                chunks.put(new Chunk(Arrays.copyOf(buffer, end)));
+
+                byte[] next = new byte[Math.max(chunkSize, (length - end) * 2)];
+                System.arraycopy(buffer, end, next, 0, length - end);
+                buffer = next;
+                length -= end;
+            }
+
+            if (length > 0) {
+                chunks.put(new Chunk(Arrays.copyOf(buffer, length)));
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * @return the offset just after the last line break in <code>[start, end)</code>, or if there is none the first
+     * after <code>end</code>, or -1 if there is no line break after <code>start</code>
+     */
+    private static int lineEnd(MappedByteBuffer buffer, int start, int end) {
+        for (int i = end - 1; i >= start; i--) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+
+        for (int i = end; i < buffer.limit(); i++) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+
+        return -1;
+    }
+
+    private static void parse(Lang lang, UUID seed, BlockingQueue<Chunk> chunks, BlockingQueue<Batch> batches) {
+        try {
+            Chunk chunk;
+            while ((chunk = chunks.take()) != Chunk.END) {
+                QuadList quads = new QuadList();
+                RDFParser.create()
+                        .source(new ByteArrayInputStream(chunk.bytes))
+                        .lang(lang)
+                        .checking(false)
+                        .labelToNode(LabelToNode.createScopeByDocumentHash(seed))
+                        .parse(quads);
+                batches.put(new Batch(quads.quads));
+            }
+
+            batches.put(Batch.END);
+        } catch (InterruptedException e) {
+            // Loading has been abandoned
+        } catch (Throwable t) {
+            try {
+                batches.put(new Batch(t));
+            } catch (InterruptedException e) {
+                // Loading has already been abandoned
+            }
+        }
+    }
+
+    private static class Chunk {
+        static final Chunk END = new Chunk(null);
+
+        final byte[] bytes;
+
+        Chunk(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    private static class Batch {
+        static final Batch END = new Batch((List<Quad>) null);
+
+        final List<Quad> quads;
+        final Throwable error;
+
+        Batch(List<Quad> quads) {
+            this.quads = quads;
+            this.error = null;
+        }
+
+        Batch(Throwable error) {
+            this.quads = null;
+            this.error = error;
+        }
+    }
+
+    private static class QuadList extends StreamRDFBase {
+        final List<Quad> quads = new ArrayList<>();
+
+        @Override
+        public void triple(Triple triple) {
+            quads.add(Quad.create(Quad.defaultGraphNodeGenerated, triple));
+        }
+
+        @Override
+        public void quad(Quad quad) {
+            quads.add(quad);
+        }
+    }
+
+    static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final long MAP_SIZE = 256L * 1024 * 1024;
+}
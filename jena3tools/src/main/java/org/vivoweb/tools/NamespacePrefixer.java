@@ -0,0 +1,79 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+import org.apache.jena.sparql.core.Quad;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Declares a prefix for the namespace of each IRI the first time it is seen, before passing the triple or quad on.
+ *
+ * RDF Thrift writes an IRI that starts with a declared prefix as the prefix name and the rest of the IRI, so this
+ * stops the namespace being repeated in every term. The number of prefixes is kept to a few dozen, enough for the
+ * ontologies and individuals of a VIVO store, as the writer tries each prefix in turn against every IRI it writes.
+ *
+ * The prefix names start with an underscore, which no Turtle or TriG prefix can, so they never clash with the
+ * prefixes of the data, and can be dropped again when the dump is read.
+ */
+public class NamespacePrefixer extends StreamRDFWrapper {
+    private final Set<String> namespaces = new HashSet<>();
+
+    public NamespacePrefixer(StreamRDF other) {
+        super(other);
+    }
+
+    @Override
+    public void triple(Triple triple) {
+        declare(triple.getSubject());
+        declare(triple.getPredicate());
+        declare(triple.getObject());
+        super.triple(triple);
+    }
+
+    @Override
+    public void quad(Quad quad) {
+        declare(quad.getGraph());
+        declare(quad.getSubject());
+        declare(quad.getPredicate());
+        declare(quad.getObject());
+        super.quad(quad);
+    }
+
+    private void declare(Node node) {
+        if (node == null || !node.isURI() || namespaces.size() >= MAX_PREFIXES) {
+            return;
+        }
+
+        String uri = node.getURI();
+        int end = Math.max(uri.lastIndexOf('#'), uri.lastIndexOf('/')) + 1;
+        if (end <= 0 || end == uri.length()) {
+            return;
+        }
+
+        String namespace = uri.substring(0, end);
+        if (namespaces.add(namespace)) {
+            super.prefix(PREFIX + namespaces.size(), namespace);
+        }
+    }
+
+    /**
+     * Passes everything on to <code>other</code> except the prefixes declared by a NamespacePrefixer
+     */
+    public static StreamRDF dropPrefixes(StreamRDF other) {
+        return new StreamRDFWrapper(other) {
+            @Override
+            public void prefix(String prefix, String iri) {
+                if (!prefix.startsWith(PREFIX)) {
+                    super.prefix(prefix, iri);
+                }
+            }
+        };
+    }
+
+    private static final String PREFIX = "_";
+    private static final int MAX_PREFIXES = 50;
+}
@@ -0,0 +1,116 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.riot.out.NodeFmtLib;
+import org.apache.jena.riot.tokens.Token;
+import org.apache.jena.riot.tokens.TokenType;
+import org.apache.jena.riot.tokens.Tokenizer;
+import org.apache.jena.sparql.core.Quad;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Nodes as N-Triples terms, for lines of triples and quads that are written to a file and read back, such as sort
+ * runs, and that have to read back as exactly the nodes that were written.
+ *
+ * Characters that N-Triples doesn't allow in an IRI are written as Unicode escapes, so that an IRI a store took, such
+ * as one with a space in it, can still be read. Datatypes are written in full, and blank node labels are written
+ * encoded and decoded again when read. Nodes are rebuilt as they are, without the checks a parser would make.
+ */
+public class NodeFormat {
+    public static String str(Node node) {
+        if (node.isURI()) {
+            return str(node.getURI());
+        } else if (node.isLiteral()) {
+            // Quoted and escaped as a simple literal, with the language or datatype written out in full
+            String lexicalForm = NodeFmtLib.str(NodeFactory.createLiteral(node.getLiteralLexicalForm()));
+            String lang = node.getLiteralLanguage();
+            if (lang != null && !lang.isEmpty()) {
+                return lexicalForm + "@" + lang;
+            }
+
+            String datatype = node.getLiteralDatatypeURI();
+            if (datatype == null || XSDDatatype.XSDstring.getURI().equals(datatype)) {
+                return lexicalForm;
+            }
+            return lexicalForm + "^^" + str(datatype);
+        }
+
+        return NodeFmtLib.str(node);
+    }
+
+    /**
+     * N-Quads line of a quad, without the graph if it is in the default graph
+     */
+    public static String str(Quad quad) {
+        StringBuilder line = new StringBuilder();
+        line.append(str(quad.getSubject())).append(' ')
+            .append(str(quad.getPredicate())).append(' ')
+            .append(str(quad.getObject())).append(' ');
+        if (!quad.isDefaultGraph()) {
+            line.append(str(quad.getGraph())).append(' ');
+        }
+        return line.append('.').toString();
+    }
+
+    private static String str(String uri) {
+        StringBuilder str = new StringBuilder(uri.length() + 2).append('<');
+        for (int i = 0; i < uri.length(); i++) {
+            char ch = uri.charAt(i);
+            if (ch <= ' ' || IRI_ESCAPED.indexOf(ch) >= 0) {
+                str.append(String.format("\\u%04X", (int) ch));
+            } else {
+                str.append(ch);
+            }
+        }
+        return str.append('>').toString();
+    }
+
+    /**
+     * The node written by {@link #str(Node)} that <code>token</code> was read from
+     */
+    public static Node asNode(Token token) {
+        if (token.isIRI()) {
+            return NodeFactory.createURI(token.getImage());
+        } else if (token.isBNode()) {
+            return NodeFactory.createBlankNode(NodeFmtLib.decodeBNodeLabel(token.getImage()));
+        } else if (token.hasType(TokenType.LITERAL_LANG)) {
+            return NodeFactory.createLiteral(token.getImage(), token.getImage2());
+        } else if (token.hasType(TokenType.LITERAL_DT)) {
+            return NodeFactory.createLiteral(token.getImage(),
+                    TypeMapper.getInstance().getSafeTypeByName(token.getSubToken2().getImage()));
+        } else if (token.isString()) {
+            return NodeFactory.createLiteral(token.getImage());
+        }
+
+        return token.asNode();
+    }
+
+    /**
+     * The quad in the rest of a line written by {@link #str(Quad)}, or null if there isn't one
+     */
+    public static Quad parseQuad(Tokenizer tokenizer) {
+        List<Node> nodes = new ArrayList<>(4);
+        while (tokenizer.hasNext()) {
+            Token token = tokenizer.next();
+            if (token.hasType(TokenType.DOT)) {
+                break;
+            }
+            nodes.add(asNode(token));
+        }
+
+        if (nodes.size() == 3) {
+            return Quad.create(Quad.defaultGraphNodeGenerated, nodes.get(0), nodes.get(1), nodes.get(2));
+        } else if (nodes.size() == 4) {
+            return Quad.create(nodes.get(3), nodes.get(0), nodes.get(1), nodes.get(2));
+        }
+        return null;
+    }
+
+    // Characters that N-Triples doesn't allow in an IRI, besides controls and space
+    private static final String IRI_ESCAPED = "<>\"{}|^`\\";
+}
@@ -0,0 +1,106 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sdb.layout2.ValueType;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Canonical instances of URI and typed literal nodes, so that each distinct node read from the database is built
+ * once rather than on every row it appears in, and so that nodes held in memory during export are shared.
+ *
+ * The lookup is made before the node is built, which also saves parsing the value of typed literals. Language and
+ * plain literals are mostly distinct, and blank nodes are cheap, so they are not interned. Holds at most
+ * <code>maxSize</code> nodes, discarding the least recently used. May be shared by several readers.
+ */
+public class NodeInterner {
+    private final Map<Object, Node> nodes;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    public NodeInterner(final int maxSize) {
+        this.nodes = new LinkedHashMap<Object, Node>(Math.min(maxSize, 1 << 16), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Node> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public Node makeNode(String lex, String datatype, String lang, ValueType vType) {
+        Object key;
+        switch (vType) {
+            case URI:
+                key = lex;
+                break;
+            case XSDSTRING:
+            case INTEGER:
+            case DOUBLE:
+            case DATETIME:
+                key = new LiteralKey(vType.name(), lex);
+                break;
+            case OTHER:
+                key = new LiteralKey(datatype, lex);
+                break;
+            default:
+                return SDBQuadReader.makeNode(lex, datatype, lang, vType);
+        }
+
+        synchronized (this) {
+            Node node = nodes.get(key);
+            if (node != null) {
+                hits++;
+                return node;
+            }
+            misses++;
+        }
+
+        Node node = SDBQuadReader.makeNode(lex, datatype, lang, vType);
+
+        synchronized (this) {
+            nodes.put(key, node);
+        }
+
+        return node;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    private static class LiteralKey {
+        private final String type;
+        private final String lex;
+
+        LiteralKey(String type, String lex) {
+            this.type = type;
+            this.lex = lex;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof LiteralKey)) {
+                return false;
+            }
+
+            LiteralKey other = (LiteralKey) obj;
+            return lex.equals(other.lex) && (type == null ? other.type == null : type.equals(other.type));
+        }
+
+        @Override
+        public int hashCode() {
+            return lex.hashCode() * 31 + (type == null ? 0 : type.hashCode());
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.tokens.Tokenizer;
+import org.apache.jena.riot.tokens.TokenizerFactory;
+import org.apache.jena.sparql.core.Quad;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+
+/**
+ * Reads a patch written by {@link QuadDelta}, and passes its changes on to be made to a store.
+ *
+ * Blank nodes are made from their labels, so a patch finds the blank nodes of a store that has the same labels as
+ * the store it was exported from - such as one loaded by --migrate, or kept up to date by applying each patch.
+ * Adding a quad that is there already, or removing one that isn't, changes nothing, so a patch that was partly
+ * applied can be applied again.
+ */
+public class PatchReader {
+    private final File file;
+
+    private String id;
+    private String previous;
+
+    private long added = 0;
+    private long removed = 0;
+
+    /**
+     * Changes to make to a store
+     */
+    public interface Changes {
+        void add(Quad quad);
+
+        void delete(Quad quad);
+    }
+
+    /**
+     * Read the header of the patch, with its id and the id of the patch before it
+     */
+    public PatchReader(File file) throws IOException {
+        this.file = file;
+
+        BufferedReader reader = open();
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                Tokenizer tokenizer = TokenizerFactory.makeTokenizerString(line);
+                if (!HEADER.equals(tokenizer.next().getImage())) {
+                    break;
+                }
+
+                String field = tokenizer.next().getImage();
+                String value = tokenizer.next().getImage();
+                if ("id".equals(field)) {
+                    id = value;
+                } else if ("prev".equals(field)) {
+                    previous = value;
+                }
+            }
+        } catch (RiotException | NoSuchElementException e) {
+            throw new IOException("Invalid patch header in " + file.getAbsolutePath(), e);
+        } finally {
+            reader.close();
+        }
+
+        if (id == null) {
+            throw new IOException("Patch " + file.getAbsolutePath() + " has no id");
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Id of the patch that this one follows on from
+     */
+    public String getPrevious() {
+        return previous;
+    }
+
+    public long getAdded() {
+        return added;
+    }
+
+    public long getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Pass each addition and removal in the patch to <code>changes</code>, in the order they are listed
+     */
+    public void apply(Changes changes) throws IOException {
+        BufferedReader reader = open();
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                Tokenizer tokenizer = TokenizerFactory.makeTokenizerString(line);
+                String row = tokenizer.next().getImage();
+                if (ADD.equals(row)) {
+                    changes.add(readQuad(tokenizer, line));
+                    added++;
+                } else if (DELETE.equals(row)) {
+                    changes.delete(readQuad(tokenizer, line));
+                    removed++;
+                } else if (!HEADER.equals(row) && !TRANSACTION_BEGIN.equals(row) && !TRANSACTION_COMMIT.equals(row) &&
+                        !PREFIX_ADD.equals(row) && !PREFIX_DELETE.equals(row)) {
+                    // Including TA, as a patch that was aborted shouldn't be applied
+                    throw new IOException("Unsupported patch row in " + file.getAbsolutePath() + ": " + line);
+                }
+            }
+        } catch (RiotException e) {
+            throw new IOException("Invalid patch row in " + file.getAbsolutePath(), e);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Id of the last patch applied to a store, as recorded in <code>file</code>, or null if there is none
+     */
+    public static String readApplied(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+
+        Properties props = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            props.load(in);
+        } finally {
+            in.close();
+        }
+
+        return props.getProperty(PROPERTY_ID);
+    }
+
+    /**
+     * Record the id of the last patch applied to a store, replacing <code>file</code> by a single rename
+     */
+    public static void writeApplied(File file, String id) throws IOException {
+        Properties props = new Properties();
+        props.setProperty(PROPERTY_ID, id);
+
+        File temp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            props.store(out, "Last patch applied");
+        } finally {
+            out.close();
+        }
+
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private BufferedReader open() throws IOException {
+        return new BufferedReader(new InputStreamReader(Utils.openInput(file), StandardCharsets.UTF_8));
+    }
+
+    private Quad readQuad(Tokenizer tokenizer, String line) throws IOException {
+        // Nodes are made as they were written, without checking them again, so any quad a store held can be applied
+        Quad quad = NodeFormat.parseQuad(tokenizer);
+        if (quad == null) {
+            throw new IOException("Invalid patch row in " + file.getAbsolutePath() + ": " + line);
+        }
+        return quad;
+    }
+
+    private static final String HEADER = "H";
+    private static final String TRANSACTION_BEGIN = "TX";
+    private static final String TRANSACTION_COMMIT = "TC";
+    private static final String ADD = "A";
+    private static final String DELETE = "D";
+    private static final String PREFIX_ADD = "PA";
+    private static final String PREFIX_DELETE = "PD";
+
+    private static final String PROPERTY_ID = "id";
+}
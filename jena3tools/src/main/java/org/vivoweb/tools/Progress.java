@@ -0,0 +1,258 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+import org.apache.jena.sparql.core.Quad;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Reports how far a stage of an import or export has got - quads, bytes read or written, pages of the Quads table,
+ * throughput, an estimate of the time remaining and heap usage - on a thread of its own, every
+ * <code>interval</code> milliseconds.
+ *
+ * The time remaining is estimated from the total number of quads if it is known, otherwise from the total number
+ * of bytes. Each counter is only updated from one thread at a time, so they are volatile rather than atomic.
+ */
+public class Progress {
+    private final String stage;
+    private final long interval;
+
+    private volatile long quads = 0;
+    private volatile long bytes = 0;
+    private volatile long pages = 0;
+
+    private long totalQuads = 0;
+    private long totalBytes = 0;
+
+    private long started;
+    private long millis = -1;
+    private Thread reporter;
+
+    private long reportedQuads = 0;
+    private long reportedAt;
+
+    /**
+     * @param interval milliseconds between reports, or 0 for none
+     */
+    public Progress(String stage, long interval) {
+        this.stage = stage;
+        this.interval = interval;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    /**
+     * Number of quads the stage will handle, or 0 if not known
+     */
+    public void setTotalQuads(long totalQuads) {
+        this.totalQuads = totalQuads;
+    }
+
+    /**
+     * Number of bytes the stage will read or write, or 0 if not known
+     */
+    public void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    public void start() {
+        started = System.currentTimeMillis();
+        reportedAt = started;
+
+        if (interval > 0) {
+            reporter = new Thread(() -> {
+                try {
+                    while (true) {
+                        Thread.sleep(interval);
+                        System.out.println(report());
+                    }
+                } catch (InterruptedException e) {
+                    // Stage finished
+                }
+            }, "progress");
+            reporter.setDaemon(true);
+            reporter.start();
+        }
+    }
+
+    /**
+     * Stop reporting and print the totals for the stage
+     */
+    public void finish() {
+        millis = System.currentTimeMillis() - started;
+
+        if (reporter != null) {
+            reporter.interrupt();
+            try {
+                reporter.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            reporter = null;
+        }
+
+        StringBuilder summary = new StringBuilder(stage).append(": ");
+        if (quads > 0) {
+            summary.append(String.format("%d quads, ", quads));
+        }
+        if (bytes > 0) {
+            summary.append(formatBytes(bytes)).append(", ");
+        }
+        summary.append(String.format("%.1fs", millis / 1000.0));
+        if (quads > 0 && millis > 0) {
+            summary.append(String.format(" (%.0f quads/s)", quads * 1000.0 / millis));
+        }
+        System.out.println(summary);
+    }
+
+    public void addQuads(long count) {
+        quads += count;
+    }
+
+    public void addBytes(long count) {
+        bytes += count;
+    }
+
+    public void page() {
+        pages++;
+    }
+
+    public long getQuads() {
+        return quads;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getPages() {
+        return pages;
+    }
+
+    /**
+     * Wall time of the stage, or of the stage so far if it hasn't finished
+     */
+    public long getMillis() {
+        return millis < 0 ? System.currentTimeMillis() - started : millis;
+    }
+
+    /**
+     * Stream that counts the triples and quads passing through to <code>other</code>
+     */
+    public StreamRDF count(StreamRDF other) {
+        return new StreamRDFWrapper(other) {
+            @Override
+            public void triple(Triple triple) {
+                quads++;
+                super.triple(triple);
+            }
+
+            @Override
+            public void quad(Quad quad) {
+                quads++;
+                super.quad(quad);
+            }
+        };
+    }
+
+    /**
+     * Stream that counts the bytes read from <code>in</code>
+     */
+    public InputStream count(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = in.read();
+                if (b >= 0) {
+                    bytes++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = in.read(b, off, len);
+                if (read > 0) {
+                    bytes += read;
+                }
+                return read;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = in.skip(n);
+                bytes += skipped;
+                return skipped;
+            }
+        };
+    }
+
+    /**
+     * Stream that counts the bytes written to <code>out</code>
+     */
+    public OutputStream count(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                bytes++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                bytes += len;
+            }
+        };
+    }
+
+    private String report() {
+        long now = System.currentTimeMillis();
+        long elapsed = now - started;
+        long currentQuads = quads;
+
+        StringBuilder report = new StringBuilder(stage).append(": ");
+        report.append(String.format("%d quads", currentQuads));
+        if (bytes > 0) {
+            report.append(", ").append(formatBytes(bytes));
+        }
+        if (pages > 0) {
+            report.append(String.format(", %d pages", pages));
+        }
+
+        // Throughput since the last report, so that a stall shows up straight away
+        if (now > reportedAt) {
+            report.append(String.format(", %.0f quads/s", (currentQuads - reportedQuads) * 1000.0 / (now - reportedAt)));
+        }
+        reportedQuads = currentQuads;
+        reportedAt = now;
+
+        double done = totalQuads > 0 ? (double) currentQuads / totalQuads :
+                      totalBytes > 0 ? (double) bytes / totalBytes : 0;
+        if (done > 0 && done <= 1) {
+            long remaining = (long) (elapsed * (1 - done) / done) / 1000;
+            report.append(String.format(", %.1f%% ETA %d:%02d:%02d",
+                    done * 100, remaining / 3600, (remaining / 60) % 60, remaining % 60));
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        report.append(String.format(", heap %d/%d MB",
+                (runtime.totalMemory() - runtime.freeMemory()) / MB, runtime.maxMemory() / MB));
+
+        return report.toString();
+    }
+
+    static String formatBytes(long bytes) {
+        return String.format("%.1f MB", (double) bytes / MB);
+    }
+
+    private static final long MB = 1024 * 1024;
+}
@@ -0,0 +1,33 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+import org.apache.jena.sparql.core.Quad;
+
+/**
+ * Counts the triples and quads passing through to another stream
+ */
+public class QuadCounter extends StreamRDFWrapper {
+    private long count = 0;
+
+    public QuadCounter(StreamRDF other) {
+        super(other);
+    }
+
+    @Override
+    public void triple(Triple triple) {
+        count++;
+        super.triple(triple);
+    }
+
+    @Override
+    public void quad(Quad quad) {
+        count++;
+        super.quad(quad);
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
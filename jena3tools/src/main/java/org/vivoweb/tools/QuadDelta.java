@@ -0,0 +1,334 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.sparql.core.Quad;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Works out the quads added to and removed from a store since a previous export, from a sorted snapshot of its quads.
+ *
+ * The quads are collected as N-Quads lines, as written by {@link NodeFormat}, in a {@link LineSorter}. Writing merges
+ * them into a new snapshot, a gzipped N-Quads file of each distinct quad in line order, and at the same time reads the
+ * previous snapshot, which is in the same order, so that a line in only one of them is a quad that was added or
+ * removed. Only one line of each is held in memory.
+ *
+ * The changes are written as an RDF Patch in a single transaction, with a D row for each quad removed and then an A
+ * row for each quad added. The additions are held in a temporary file until the comparison is done, so that a store
+ * applying the patch switches between removing and adding once, rather than at every change:
+ *
+ * <pre>
+ * H id &lt;urn:uuid:...&gt; .
+ * H prev &lt;urn:uuid:...&gt; .
+ * TX .
+ * D &lt;s&gt; &lt;p&gt; &lt;o&gt; &lt;g&gt; .
+ * A &lt;s&gt; &lt;p&gt; &lt;o&gt; &lt;g&gt; .
+ * TC .
+ * </pre>
+ *
+ * The snapshot starts with a comment holding its id, which is also the id of the patch that leads to it, and is given
+ * as the prev of the next patch so that patches can be checked to follow on from each other.
+ */
+public class QuadDelta implements StreamRDF, AutoCloseable {
+    private final LineSorter lines;
+
+    private long added = 0;
+    private long removed = 0;
+
+    public QuadDelta(File directory, long threshold) {
+        this.lines = new LineSorter(directory, "quads-", threshold);
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void triple(Triple triple) {
+        quad(new Quad(Quad.defaultGraphIRI, triple));
+    }
+
+    @Override
+    public void quad(Quad quad) {
+        lines.add(NodeFormat.str(quad));
+    }
+
+    @Override
+    public void base(String base) {
+    }
+
+    @Override
+    public void prefix(String prefix, String iri) {
+    }
+
+    @Override
+    public void finish() {
+    }
+
+    /**
+     * Write the snapshot of the quads collected, replacing <code>snapshot</code>, and the changes since the snapshot
+     * it replaces to <code>patch</code>. Without a previous snapshot there is nothing to compare with, so only the
+     * snapshot is written.
+     *
+     * @return the number of quads in the snapshot
+     */
+    public long write(File snapshot, File patch) throws IOException {
+        File directory = snapshot.getAbsoluteFile().getParentFile();
+        File next = new File(directory, NEXT_PREFIX + snapshot.getName());
+        File nextPatch = new File(patch.getAbsoluteFile().getParentFile(), NEXT_PREFIX + patch.getName());
+        String id = ID_PREFIX + UUID.randomUUID();
+
+        BufferedReader previous = null;
+        Writer snapshotWriter = null;
+        Writer patchWriter = null;
+        File additions = null;
+        Writer additionsWriter = null;
+        boolean moved = false;
+        try {
+            String previousId = null;
+            if (snapshot.exists()) {
+                previous = new BufferedReader(new InputStreamReader(Utils.openInput(snapshot), StandardCharsets.UTF_8));
+                previousId = readId(previous.readLine());
+                if (previousId == null) {
+                    throw new IOException("Invalid snapshot " + snapshot.getAbsolutePath());
+                }
+
+                recoverPatch(patch.getAbsoluteFile().getParentFile(), previousId);
+            }
+
+            snapshotWriter = new OutputStreamWriter(Utils.openOutput(next), StandardCharsets.UTF_8);
+            writeLine(snapshotWriter, ID_COMMENT + "<" + id + ">");
+
+            if (previous != null) {
+                patchWriter = new OutputStreamWriter(Utils.openOutput(nextPatch), StandardCharsets.UTF_8);
+                writeLine(patchWriter, "H id <" + id + "> .");
+                writeLine(patchWriter, "H prev <" + previousId + "> .");
+                writeLine(patchWriter, "TX .");
+
+                additions = File.createTempFile("added-", ".sort", directory);
+                additionsWriter = new BufferedWriter(
+                        new OutputStreamWriter(new FileOutputStream(additions), StandardCharsets.UTF_8));
+            }
+
+            Comparison comparison = new Comparison(previous, snapshotWriter, patchWriter, additionsWriter);
+            long quads;
+            try {
+                quads = lines.merge(comparison);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            comparison.finish();
+
+            if (patchWriter != null) {
+                additionsWriter.close();
+                additionsWriter = null;
+                copyLines(additions, patchWriter);
+
+                writeLine(patchWriter, "TC .");
+                patchWriter.close();
+                patchWriter = null;
+            }
+
+            snapshotWriter.close();
+            snapshotWriter = null;
+
+            if (previous != null) {
+                previous.close();
+                previous = null;
+            }
+
+            // The snapshot is moved into place before the patch is named, so a patch is never there without its
+            // snapshot. Otherwise the next export would write another patch that follows on from the same one
+            Files.move(next.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+            if (previousId != null) {
+                Files.move(nextPatch.toPath(), patch.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            return quads;
+        } finally {
+            if (previous != null) {
+                previous.close();
+            }
+            if (snapshotWriter != null) {
+                snapshotWriter.close();
+            }
+            if (patchWriter != null) {
+                patchWriter.close();
+            }
+            if (additionsWriter != null) {
+                additionsWriter.close();
+            }
+            if (additions != null && !additions.delete()) {
+                additions.deleteOnExit();
+            }
+
+            // Leave the previous snapshot as it was, and no patch, so that the export can be run again
+            if (!moved) {
+                next.delete();
+                nextPatch.delete();
+            }
+        }
+    }
+
+    /**
+     * Number of quads in the patch written that were not in the previous snapshot
+     */
+    public long getAdded() {
+        return added;
+    }
+
+    /**
+     * Number of quads in the patch written that are no longer in the store
+     */
+    public long getRemoved() {
+        return removed;
+    }
+
+    @Override
+    public void close() {
+        lines.close();
+    }
+
+    /**
+     * Give its name to a patch left by an export that stopped after moving its snapshot into place, but before naming
+     * the patch. The patch to name is the one with the id of the snapshot.
+     */
+    private static void recoverPatch(File directory, String snapshotId) throws IOException {
+        File[] files = directory.listFiles((dir, name) ->
+                name.startsWith(NEXT_PREFIX) && name.contains(PATCH_EXTENSION));
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            String id;
+            try {
+                id = new PatchReader(file).getId();
+            } catch (IOException e) {
+                // Not finished, so not the patch of the snapshot
+                continue;
+            }
+
+            if (snapshotId.equals(id)) {
+                File named = new File(directory, file.getName().substring(NEXT_PREFIX.length()));
+                Files.move(file.toPath(), named.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+    }
+
+    private static String readId(String line) {
+        if (line == null || !line.startsWith(ID_COMMENT + "<") || !line.endsWith(">")) {
+            return null;
+        }
+
+        return line.substring(ID_COMMENT.length() + 1, line.length() - 1);
+    }
+
+    private static void writeLine(Writer writer, String line) throws IOException {
+        writer.write(line);
+        writer.write('\n');
+    }
+
+    private static void copyLines(File file, Writer writer) throws IOException {
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                writeLine(writer, line);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Writes each line of the new snapshot, and moves through the previous snapshot alongside it, writing a removal
+     * for each line passed over that isn't in the new one, and an addition to <code>additions</code> for each new line
+     * that isn't in the old one
+     */
+    private class Comparison implements Consumer<String> {
+        private final BufferedReader previous;
+        private final Writer snapshot;
+        private final Writer patch;
+        private final Writer additions;
+
+        private String previousLine;
+
+        Comparison(BufferedReader previous, Writer snapshot, Writer patch, Writer additions) throws IOException {
+            this.previous = previous;
+            this.snapshot = snapshot;
+            this.patch = patch;
+            this.additions = additions;
+
+            if (previous != null) {
+                previousLine = nextLine();
+            }
+        }
+
+        @Override
+        public void accept(String line) {
+            try {
+                writeLine(snapshot, line);
+
+                if (patch != null) {
+                    while (previousLine != null && previousLine.compareTo(line) < 0) {
+                        writeLine(patch, "D " + previousLine);
+                        removed++;
+                        previousLine = nextLine();
+                    }
+
+                    if (line.equals(previousLine)) {
+                        previousLine = nextLine();
+                    } else {
+                        writeLine(additions, "A " + line);
+                        added++;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Whatever is left of the previous snapshot has been removed
+         */
+        void finish() throws IOException {
+            while (patch != null && previousLine != null) {
+                writeLine(patch, "D " + previousLine);
+                removed++;
+                previousLine = nextLine();
+            }
+        }
+
+        private String nextLine() throws IOException {
+            String line = previous.readLine();
+            while (line != null && (line.isEmpty() || line.startsWith("#"))) {
+                line = previous.readLine();
+            }
+            return line;
+        }
+    }
+
+    public static final String SNAPSHOT_EXTENSION = ".snapshot.nq.gz";
+    public static final String PATCH_EXTENSION = ".patch";
+
+    private static final String NEXT_PREFIX = "next-";
+    private static final String ID_PREFIX = "urn:uuid:";
+    private static final String ID_COMMENT = "# id ";
+}
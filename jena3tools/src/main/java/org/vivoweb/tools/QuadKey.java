@@ -0,0 +1,20 @@
+package org.vivoweb.tools;
+
+/**
+ * Position of a row in the SDB Quads table, as its (g,s,p,o) primary key.
+ *
+ * The columns hold node hashes for layout2/hash and node ids for layout2/index, both of which fit in a long.
+ */
+public class QuadKey {
+    public final long g;
+    public final long s;
+    public final long p;
+    public final long o;
+
+    public QuadKey(long g, long s, long p, long o) {
+        this.g = g;
+        this.s = s;
+        this.p = p;
+        this.o = o;
+    }
+}
@@ -0,0 +1,36 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+import org.apache.jena.sparql.core.Quad;
+
+/**
+ * Drops the first <code>skip</code> triples and quads, passing the rest through to another stream
+ */
+public class QuadSkipper extends StreamRDFWrapper {
+    private long skip;
+
+    public QuadSkipper(StreamRDF other, long skip) {
+        super(other);
+        this.skip = skip;
+    }
+
+    @Override
+    public void triple(Triple triple) {
+        if (skip > 0) {
+            skip--;
+        } else {
+            super.triple(triple);
+        }
+    }
+
+    @Override
+    public void quad(Quad quad) {
+        if (skip > 0) {
+            skip--;
+        } else {
+            super.quad(quad);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.tokens.TokenizerFactory;
+import org.apache.jena.sparql.core.Quad;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds quads that have to be written after everything else, keeping at most <code>threshold</code> of them in memory.
+ *
+ * Beyond the threshold, all of the quads are moved to a temporary N-Quads file, which is read back when the buffer
+ * is replayed. The lines are written and read back by {@link NodeFormat} rather than by an N-Quads writer and parser,
+ * as the parser would make new blank nodes for the labels it reads, so blank nodes are the same when read back as
+ * when they were added.
+ */
+public class QuadSpillBuffer implements StreamRDF, AutoCloseable {
+    private final File directory;
+    private final long threshold;
+
+    private List<Quad> quads = new ArrayList<>();
+    private long size = 0;
+
+    private File spillFile;
+    private Writer spillWriter;
+
+    public QuadSpillBuffer(File directory, long threshold) {
+        this.directory = directory;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void triple(Triple triple) {
+        quad(Quad.create(Quad.defaultGraphNodeGenerated, triple));
+    }
+
+    @Override
+    public void quad(Quad quad) {
+        if (spillFile != null) {
+            if (spillWriter == null) {
+                throw new IllegalStateException("Quads can not be added once the spill file has been replayed");
+            }
+            writeQuad(quad);
+        } else {
+            quads.add(quad);
+            if (quads.size() > threshold) {
+                spill();
+            }
+        }
+
+        size++;
+    }
+
+    @Override
+    public void base(String base) {
+    }
+
+    @Override
+    public void prefix(String prefix, String iri) {
+    }
+
+    @Override
+    public void finish() {
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Send all of the buffered quads, in the order they were added, to <code>destination</code>.
+     *
+     * Only the quads are sent - it is up to the caller to start and finish the destination.
+     */
+    public void replay(StreamRDF destination) {
+        if (spillFile == null) {
+            for (Quad quad : quads) {
+                destination.quad(quad);
+            }
+            return;
+        }
+
+        try {
+            closeSpillWriter();
+
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(spillFile), StandardCharsets.UTF_8));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    destination.quad(NodeFormat.parseQuad(TokenizerFactory.makeTokenizerString(line)));
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read spilled quads from " + spillFile.getAbsolutePath(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            closeSpillWriter();
+        } catch (IOException e) {
+            // Only closing a temporary file, which is about to be deleted
+        }
+
+        if (spillFile != null && !spillFile.delete()) {
+            spillFile.deleteOnExit();
+        }
+
+        quads.clear();
+    }
+
+    private void spill() {
+        try {
+            spillFile = File.createTempFile("quads-", ".nq", directory);
+            spillWriter = new BufferedWriter(
+                    new OutputStreamWriter(new FileOutputStream(spillFile), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to create spill file in " + directory.getAbsolutePath(), e);
+        }
+
+        for (Quad quad : quads) {
+            writeQuad(quad);
+        }
+
+        quads = new ArrayList<>();
+    }
+
+    private void writeQuad(Quad quad) {
+        try {
+            spillWriter.write(NodeFormat.str(quad));
+            spillWriter.write('\n');
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write spilled quads to " + spillFile.getAbsolutePath(), e);
+        }
+    }
+
+    private void closeSpillWriter() throws IOException {
+        if (spillWriter != null) {
+            spillWriter.close();
+            spillWriter = null;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.graph.Node;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Nodes of an SDB store, keyed by their hash (layout2/hash) or id (layout2/index), holding at most
+ * <code>maxSize</code> nodes and discarding the least recently used.
+ *
+ * Graphs, predicates, classes and common objects appear in a great many quads, so most lookups are hits even when
+ * the cache is far smaller than the Nodes table. May be shared by several readers.
+ */
+public class SDBNodeCache {
+    private final Map<Long, Node> nodes;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    public SDBNodeCache(final int maxSize) {
+        this.nodes = new LinkedHashMap<Long, Node>(Math.min(maxSize, 1 << 16), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Node> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return the node with this key, or null if it is not in the cache
+     */
+    public synchronized Node get(long key) {
+        Node node = nodes.get(key);
+        if (node != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+
+        return node;
+    }
+
+    public synchronized void put(long key, Node node) {
+        nodes.put(key, node);
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,204 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sdb.StoreDesc;
+import org.apache.jena.sparql.core.Quad;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Reads partitions of the SDB Quads table on several worker threads, each with its own JDBC connection.
+ *
+ * Pages of quads are passed back to the calling thread through a bounded queue, so the handler is only ever called
+ * from one thread, and workers wait when it falls behind. Within a partition, pages are handled in key order; pages
+ * of different partitions are handled in the order that they are read.
+ */
+public class SDBParallelReader {
+    public interface BatchHandler {
+        void batch(SDBPartition partition, List<Quad> quads, List<Quad> blankQuads);
+
+        void partitionComplete(SDBPartition partition);
+    }
+
+    private final Supplier<Connection> connections;
+    private final StoreDesc storeDesc;
+    private final long pageSize;
+    private final boolean keysetPaging;
+    private final int threads;
+
+    private SDBNodeCache nodeCache;
+    private NodeInterner interner;
+    private LatencyHistogram pageReads;
+
+    public SDBParallelReader(Supplier<Connection> connections, StoreDesc storeDesc, long pageSize, boolean keysetPaging, int threads) {
+        this.connections = connections;
+        this.storeDesc = storeDesc;
+        this.pageSize = pageSize;
+        this.keysetPaging = keysetPaging;
+        this.threads = threads;
+    }
+
+    /**
+     * Cache shared by all of the workers, or null for each page to join the Nodes table
+     */
+    public void setNodeCache(SDBNodeCache nodeCache) {
+        this.nodeCache = nodeCache;
+    }
+
+    /**
+     * Interner shared by all of the workers, or null for none
+     */
+    public void setInterner(NodeInterner interner) {
+        this.interner = interner;
+    }
+
+    /**
+     * Histogram shared by all of the workers, or null for none
+     */
+    public void setPageReads(LatencyHistogram pageReads) {
+        this.pageReads = pageReads;
+    }
+
+    public void read(List<SDBPartition> partitions, BatchHandler handler) {
+        final Queue<SDBPartition> pending = new ConcurrentLinkedQueue<>(partitions);
+        final BlockingQueue<Batch> batches = new ArrayBlockingQueue<>(threads * 2);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int i = 0; i < threads; i++) {
+                executor.execute(() -> work(pending, batches));
+            }
+
+            int complete = 0;
+            while (complete < partitions.size()) {
+                Batch batch = batches.take();
+                if (batch.error != null) {
+                    throw new RuntimeException("Unable to retrieve triples", batch.error);
+                }
+
+                if (batch.complete) {
+                    handler.partitionComplete(batch.partition);
+                    complete++;
+                } else {
+                    handler.batch(batch.partition, batch.quads, batch.blankQuads);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while retrieving triples", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void work(Queue<SDBPartition> pending, BlockingQueue<Batch> batches) {
+        try {
+            Connection connection = connections.get();
+            try {
+                SDBQuadReader reader = new SDBQuadReader(connection, storeDesc, pageSize, keysetPaging);
+                reader.setNodeCache(nodeCache);
+                reader.setInterner(interner);
+                reader.setPageReads(pageReads);
+                QuadList quads = new QuadList();
+                QuadList blankQuads = new QuadList();
+
+                SDBPartition partition;
+                while ((partition = pending.poll()) != null) {
+                    final SDBPartition current = partition;
+
+                    reader.setPartition(current);
+                    reader.read(quads, blankQuads, () -> {
+                        if (!quads.isEmpty() || !blankQuads.isEmpty()) {
+                            put(batches, new Batch(current, quads.take(), blankQuads.take()));
+                        }
+                    });
+
+                    put(batches, new Batch(current));
+                }
+            } finally {
+                connection.close();
+            }
+        } catch (Throwable t) {
+            try {
+                batches.put(new Batch(t));
+            } catch (InterruptedException e) {
+                // Reading has already been abandoned
+            }
+        }
+    }
+
+    private static void put(BlockingQueue<Batch> batches, Batch batch) {
+        try {
+            batches.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while retrieving triples", e);
+        }
+    }
+
+    private static class Batch {
+        final SDBPartition partition;
+        final List<Quad> quads;
+        final List<Quad> blankQuads;
+        final boolean complete;
+        final Throwable error;
+
+        Batch(SDBPartition partition, List<Quad> quads, List<Quad> blankQuads) {
+            this.partition = partition;
+            this.quads = quads;
+            this.blankQuads = blankQuads;
+            this.complete = false;
+            this.error = null;
+        }
+
+        Batch(SDBPartition partition) {
+            this.partition = partition;
+            this.quads = null;
+            this.blankQuads = null;
+            this.complete = true;
+            this.error = null;
+        }
+
+        Batch(Throwable error) {
+            this.partition = null;
+            this.quads = null;
+            this.blankQuads = null;
+            this.complete = false;
+            this.error = error;
+        }
+    }
+
+    private static class QuadList extends StreamRDFBase {
+        private List<Quad> quads = new ArrayList<>();
+
+        @Override
+        public void triple(Triple triple) {
+            quads.add(Quad.create(Quad.defaultGraphNodeGenerated, triple));
+        }
+
+        @Override
+        public void quad(Quad quad) {
+            quads.add(quad);
+        }
+
+        boolean isEmpty() {
+            return quads.isEmpty();
+        }
+
+        List<Quad> take() {
+            List<Quad> taken = quads;
+            quads = new ArrayList<>();
+            return taken;
+        }
+    }
+}
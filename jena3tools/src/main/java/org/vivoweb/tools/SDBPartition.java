@@ -0,0 +1,141 @@
+package org.vivoweb.tools;
+
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A part of the SDB Quads table that can be read independently of the rest - all of the rows of one graph, or the
+ * rows of one graph with subjects in a range of node keys.
+ *
+ * Both are a prefix of the (g,s,p,o) primary key, so each partition is read as a range of the primary key index.
+ */
+public class SDBPartition {
+    private final int index;
+    private final long graph;
+    private final Long subjectFrom;
+    private final Long subjectTo;
+
+    SDBPartition(int index, long graph, Long subjectFrom, Long subjectTo) {
+        this.index = index;
+        this.graph = graph;
+        this.subjectFrom = subjectFrom;
+        this.subjectTo = subjectTo;
+    }
+
+    /**
+     * Position of this partition in the Quads table, starting from zero.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    String getCondition() {
+        if (subjectFrom == null) {
+            return "g = ?";
+        }
+
+        return "g = ? AND s >= ? AND s <= ?";
+    }
+
+    int setParameters(PreparedStatement stmt, int param) throws SQLException {
+        stmt.setLong(param++, graph);
+        if (subjectFrom != null) {
+            stmt.setLong(param++, subjectFrom);
+            stmt.setLong(param++, subjectTo);
+        }
+
+        return param;
+    }
+
+    /**
+     * Split the Quads table into one partition per graph.
+     */
+    public static List<SDBPartition> byGraph(Connection connection) {
+        return byGraph(connection, null);
+    }
+
+    /**
+     * @param graphs keys of the graphs to partition, or null for all
+     */
+    public static List<SDBPartition> byGraph(Connection connection, List<Long> graphs) {
+        return partition(connection, graphs, 1, 0);
+    }
+
+    /**
+     * Split the Quads table into partitions of roughly equal size, by dividing each graph of more than
+     * <code>minSize</code> quads into <code>ranges</code> ranges of subject keys.
+     *
+     * Node hashes in layout2/hash are spread evenly over the whole range of a long. Node ids in layout2/index are
+     * allocated in sequence, so they are spread less evenly, but still well enough to share out the work.
+     */
+    public static List<SDBPartition> byRange(Connection connection, int ranges, long minSize) {
+        return byRange(connection, null, ranges, minSize);
+    }
+
+    /**
+     * @param graphs keys of the graphs to partition, or null for all
+     */
+    public static List<SDBPartition> byRange(Connection connection, List<Long> graphs, int ranges, long minSize) {
+        return partition(connection, graphs, ranges, minSize);
+    }
+
+    private static List<SDBPartition> partition(Connection connection, List<Long> graphs, int ranges, long minSize) {
+        List<SDBPartition> partitions = new ArrayList<>();
+        if (graphs != null && graphs.isEmpty()) {
+            return partitions;
+        }
+
+        try {
+            java.sql.Statement stmt = connection.createStatement();
+            try {
+                ResultSet rs = stmt.executeQuery(
+                        "SELECT g, MIN(s) AS s_min, MAX(s) AS s_max, COUNT(*) AS quads FROM Quads " +
+                        (graphs != null ? "WHERE " + SDBQuadReader.graphCondition(graphs) + " " : "") +
+                        "GROUP BY g ORDER BY g"
+                );
+
+                try {
+                    while (rs.next()) {
+                        long graph = rs.getLong("g");
+                        long subjectMin = rs.getLong("s_min");
+                        long subjectMax = rs.getLong("s_max");
+                        long quads = rs.getLong("quads");
+
+                        if (ranges < 2 || quads <= minSize) {
+                            partitions.add(new SDBPartition(partitions.size(), graph, null, null));
+                            continue;
+                        }
+
+                        // Split [subjectMin, subjectMax] into equal ranges, without overflowing a long
+                        BigInteger min = BigInteger.valueOf(subjectMin);
+                        BigInteger width = BigInteger.valueOf(subjectMax).subtract(min).add(BigInteger.ONE);
+                        BigInteger count = BigInteger.valueOf(ranges);
+
+                        long from = subjectMin;
+                        for (int i = 1; i <= ranges; i++) {
+                            long to = min.add(width.multiply(BigInteger.valueOf(i)).divide(count))
+                                    .subtract(BigInteger.ONE).longValue();
+                            if (to >= from) {
+                                partitions.add(new SDBPartition(partitions.size(), graph, from, to));
+                                from = to + 1;
+                            }
+                        }
+                    }
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                stmt.close();
+            }
+        } catch (SQLException sqle) {
+            throw new RuntimeException("Unable to partition quads", sqle);
+        }
+
+        return partitions;
+    }
+}
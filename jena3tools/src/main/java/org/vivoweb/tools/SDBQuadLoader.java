@@ -0,0 +1,139 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sdb.Store;
+import org.apache.jena.sdb.store.StoreLoader;
+import org.apache.jena.sdb.store.StoreLoaderPlus;
+import org.apache.jena.sparql.core.Quad;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Loads a stream of quads into an SDB store through the store's bulk loader.
+ *
+ * The loader collects nodes and tuples in temporary tables and moves them into the Nodes and Quads tables with a few
+ * set based statements. It does so whenever it has collected a chunk of tuples, and here whenever a batch of
+ * <code>batchSize</code> quads is complete, which is when the loaded quads are counted as committed. A large import is
+ * made in many modest transactions rather than one, and the quads are never held in memory.
+ *
+ * The chunk size is kept to at most SDB's default, whatever the batch size, as the loader allocates a queue of that
+ * many tuples up front. The store's loader is closed with this one, so can't be used again afterwards.
+ */
+public class SDBQuadLoader extends StreamRDFBase implements AutoCloseable {
+    private final StoreLoaderPlus loader;
+    private final long batchSize;
+
+    private boolean updating = false;
+    private long pending = 0;
+    private long committed = 0;
+    private long commitNanos = 0;
+
+    private LongConsumer commitListener;
+
+    public SDBQuadLoader(Store store, long batchSize) {
+        StoreLoader storeLoader = store.getLoader();
+        if (!(storeLoader instanceof StoreLoaderPlus)) {
+            throw new RuntimeException("SDB store does not support bulk loading of quads");
+        }
+
+        this.loader = (StoreLoaderPlus) storeLoader;
+        this.batchSize = batchSize;
+
+        loader.setChunkSize((int) Math.min(batchSize, MAX_CHUNK_SIZE));
+    }
+
+    /**
+     * Called after each commit with the number of quads committed so far
+     */
+    public void setCommitListener(LongConsumer commitListener) {
+        this.commitListener = commitListener;
+    }
+
+    /**
+     * Time spent committing batches so far
+     */
+    public long getCommitMillis() {
+        return commitNanos / 1000000;
+    }
+
+    @Override
+    public void start() {
+        loader.startBulkUpdate();
+        updating = true;
+    }
+
+    @Override
+    public void triple(Triple triple) {
+        loader.addTriple(triple);
+        added();
+    }
+
+    @Override
+    public void quad(Quad quad) {
+        if (quad.isDefaultGraph()) {
+            loader.addTriple(quad.asTriple());
+        } else {
+            loader.addQuad(quad.getGraph(), quad.getSubject(), quad.getPredicate(), quad.getObject());
+        }
+        added();
+    }
+
+    /**
+     * Remove a quad, in the same batches as the quads added. The loader flushes what it has collected whenever it
+     * switches between adding and removing, so the changes are made in the order they are given.
+     */
+    public void delete(Quad quad) {
+        if (quad.isDefaultGraph()) {
+            loader.deleteTriple(quad.asTriple());
+        } else {
+            loader.deleteQuad(quad.getGraph(), quad.getSubject(), quad.getPredicate(), quad.getObject());
+        }
+        added();
+    }
+
+    @Override
+    public void finish() {
+        commit();
+    }
+
+    private void added() {
+        if (++pending >= batchSize) {
+            commit();
+            start();
+        }
+    }
+
+    private void commit() {
+        // Flushes the temporary tables and commits
+        long started = System.nanoTime();
+        updating = false;
+        loader.finishBulkUpdate();
+        commitNanos += System.nanoTime() - started;
+        committed += pending;
+        pending = 0;
+
+        if (commitListener != null) {
+            commitListener.accept(committed);
+        }
+    }
+
+    /**
+     * Finish a bulk update that was left open by an error, and release the loader's temporary tables and thread. The
+     * quads of an unfinished batch are flushed, but not counted as committed.
+     */
+    @Override
+    public void close() {
+        try {
+            if (updating) {
+                updating = false;
+                loader.finishBulkUpdate();
+            }
+        } finally {
+            loader.close();
+        }
+    }
+
+    // SDB's default chunk size
+    private static final int MAX_CHUNK_SIZE = 20000;
+}
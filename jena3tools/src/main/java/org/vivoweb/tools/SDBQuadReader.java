@@ -0,0 +1,557 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.datatypes.RDFDatatype;
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.sdb.StoreDesc;
+import org.apache.jena.sdb.layout2.ValueType;
+import org.apache.jena.sdb.store.LayoutType;
+import org.apache.jena.sparql.core.Quad;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads the quads of a layout2 SDB store directly from the Quads and Nodes tables, a page at a time.
+ */
+public class SDBQuadReader {
+    private final Connection connection;
+    private final StoreDesc storeDesc;
+
+    private final long pageSize;
+    private final boolean keysetPaging;
+
+    private SDBPartition partition;
+    private List<Long> graphs;
+    private SDBNodeCache nodeCache;
+    private NodeInterner interner;
+    private LatencyHistogram pageReads;
+
+    private QuadKey position;
+
+    // Rows read by the current page, and the time spent passing them on, which is left out of its read time
+    private long pageRows;
+    private long sendNanos;
+
+    public SDBQuadReader(Connection connection, StoreDesc storeDesc, long pageSize, boolean keysetPaging) {
+        this.connection = connection;
+        this.storeDesc = storeDesc;
+        this.pageSize = pageSize;
+        this.keysetPaging = keysetPaging;
+    }
+
+    /**
+     * Restrict reading to the rows of one partition of the Quads table, or null to read every row.
+     */
+    public void setPartition(SDBPartition partition) {
+        this.partition = partition;
+    }
+
+    /**
+     * Restrict reading to the rows of these graphs, by node key, or null to read every graph
+     */
+    public void setGraphs(List<Long> graphs) {
+        this.graphs = graphs;
+    }
+
+    /**
+     * Resolve nodes through a cache, rather than by joining the Nodes table to every page, or null to join
+     */
+    public void setNodeCache(SDBNodeCache nodeCache) {
+        this.nodeCache = nodeCache;
+    }
+
+    /**
+     * Share URI and typed literal nodes through an interner, or null to build every node afresh
+     */
+    public void setInterner(NodeInterner interner) {
+        this.interner = interner;
+    }
+
+    /**
+     * With keyset paging, start reading after this key rather than at the start of the table, e.g. to resume an
+     * export from a checkpoint
+     */
+    public void setPosition(QuadKey position) {
+        this.position = position;
+    }
+
+    /**
+     * @return the key of the last quad read with keyset paging, or null if none has been read
+     */
+    public QuadKey getPosition() {
+        return position;
+    }
+
+    /**
+     * Record the time taken to read each page, or null for none: the query and the rows fetched, but not the time
+     * taken by the streams the quads are sent to
+     */
+    public void setPageReads(LatencyHistogram pageReads) {
+        this.pageReads = pageReads;
+    }
+
+    /**
+     * Read the whole of the Quads table a page at a time, sending quads that involve a blank node to
+     * <code>blankQuads</code> and all others to <code>quads</code>.
+     *
+     * Pages are read with autocommit off, as the PostgreSQL driver otherwise ignores the fetch size and reads the whole
+     * page into memory, and each page is committed once read.
+     *
+     * @param pageComplete called after each page has been read, may be null
+     */
+    public void read(StreamRDF quads, StreamRDF blankQuads, Runnable pageComplete) {
+        if (graphs != null && graphs.isEmpty()) {
+            return;
+        }
+
+        boolean autoCommit;
+        try {
+            autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+        } catch (SQLException sqle) {
+            throw new RuntimeException("Unable to retrieve triples", sqle);
+        }
+
+        boolean read = false;
+        try {
+            readPages(quads, blankQuads, pageComplete);
+            read = true;
+        } finally {
+            try {
+                if (!read) {
+                    connection.rollback();
+                }
+                connection.setAutoCommit(autoCommit);
+            } catch (SQLException sqle) {
+                if (read) {
+                    throw new RuntimeException("Unable to retrieve triples", sqle);
+                }
+            }
+        }
+    }
+
+    private void readPages(StreamRDF quads, StreamRDF blankQuads, Runnable pageComplete) {
+        long offset = 0;
+        long limit  = pageSize;
+
+        QuadKey lastKey = keysetPaging ? position : null;
+        do {
+            long started = System.nanoTime();
+            pageRows = 0;
+            sendNanos = 0;
+
+            if (keysetPaging) {
+                // Seek past the last key of the previous page, so that each page is a range scan
+                // of the Quads primary key rather than a sort and skip of all preceding rows
+                lastKey = readPage(quads, blankQuads, lastKey, 0, limit);
+                if (lastKey != null) {
+                    position = lastKey;
+                }
+            } else {
+                lastKey = readPage(quads, blankQuads, null, offset, limit);
+                offset += limit;
+            }
+
+            try {
+                connection.commit();
+            } catch (SQLException sqle) {
+                throw new RuntimeException("Unable to retrieve triples", sqle);
+            }
+
+            if (pageReads != null) {
+                pageReads.record(pageRows, System.nanoTime() - started - sendNanos);
+            }
+
+            if (pageComplete != null) {
+                pageComplete.run();
+            }
+        } while (lastKey != null);
+    }
+
+    /**
+     * Number of rows in the Quads table
+     */
+    public static long countQuads(Connection connection) {
+        return countQuads(connection, null);
+    }
+
+    /**
+     * Number of rows of these graphs in the Quads table, or of all graphs if null
+     */
+    public static long countQuads(Connection connection, List<Long> graphs) {
+        if (graphs != null && graphs.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            java.sql.Statement stmt = connection.createStatement();
+            try {
+                ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM Quads" +
+                        (graphs != null ? " WHERE " + graphCondition(graphs) : ""));
+                try {
+                    return rs.next() ? rs.getLong(1) : 0;
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                stmt.close();
+            }
+        } catch (SQLException sqle) {
+            throw new RuntimeException("Unable to count quads", sqle);
+        }
+    }
+
+    /**
+     * Keys of the graphs in the Quads table that <code>filter</code> selects
+     */
+    public static List<Long> selectGraphs(Connection connection, StoreDesc storeDesc, GraphFilter filter) {
+        String keyColumn = LayoutType.LayoutTripleNodesHash.equals(storeDesc.getLayout()) ? "hash" : "id";
+        List<Long> graphs = new ArrayList<>();
+
+        try {
+            java.sql.Statement stmt = connection.createStatement();
+            try {
+                ResultSet rs = stmt.executeQuery("SELECT Q.g AS g, N.lex AS lex FROM (SELECT DISTINCT g FROM Quads) Q " +
+                        "JOIN Nodes AS N ON ( Q.g = N." + keyColumn + " ) ORDER BY Q.g");
+                try {
+                    while (rs.next()) {
+                        if (filter.accepts(rs.getString("lex"))) {
+                            graphs.add(rs.getLong("g"));
+                        }
+                    }
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                stmt.close();
+            }
+        } catch (SQLException sqle) {
+            throw new RuntimeException("Unable to select graphs", sqle);
+        }
+
+        return graphs;
+    }
+
+    /**
+     * Condition selecting the rows of these graphs. The keys are numbers, so they are written into the SQL
+     */
+    static String graphCondition(List<Long> graphs) {
+        StringBuilder condition = new StringBuilder("g IN (");
+        for (int i = 0; i < graphs.size(); i++) {
+            condition.append(i > 0 ? "," : "").append(graphs.get(i));
+        }
+        return condition.append(")").toString();
+    }
+
+    /**
+     * Read a page of the Quads table - either the page following the key <code>after</code> (keyset paging),
+     * or the page starting at <code>offset</code>.
+     *
+     * @return the key of the last quad in the page, or null if the page was empty
+     */
+    public QuadKey readPage(StreamRDF quads, StreamRDF blankQuads, QuadKey after, long offset, long limit) {
+        if (nodeCache != null) {
+            return readPageKeys(quads, blankQuads, after, offset, limit);
+        }
+
+        QuadKey lastKey = null;
+
+        try {
+            PreparedStatement stmt = connection.prepareStatement("SELECT \n" +
+                    "Q.g AS g_key, Q.s AS s_key, Q.p AS p_key, Q.o AS o_key,\n" +
+                    "N1.lex AS s_lex, N1.lang AS s_lang, N1.datatype AS s_datatype, N1.type AS s_type,\n" +
+                    "N2.lex AS p_lex, N2.lang AS p_lang, N2.datatype AS p_datatype, N2.type AS p_type,\n" +
+                    "N3.lex AS o_lex, N3.lang AS o_lang, N3.datatype AS o_datatype, N3.type AS o_type,\n" +
+                    "N4.lex AS g_lex, N4.lang AS g_lang, N4.datatype AS g_datatype, N4.type AS g_type \n" +
+                    "FROM\n" +
+                    "(" + quadsQuery(after, offset, limit) + ") Q\n" +
+                    ( LayoutType.LayoutTripleNodesHash.equals(storeDesc.getLayout()) ?
+                            (
+                                    "LEFT OUTER JOIN Nodes AS N1 ON ( Q.s = N1.hash ) " +
+                                    "LEFT OUTER JOIN Nodes AS N2 ON ( Q.p = N2.hash ) " +
+                                    "LEFT OUTER JOIN Nodes AS N3 ON ( Q.o = N3.hash ) " +
+                                    "LEFT OUTER JOIN Nodes AS N4 ON ( Q.g = N4.hash ) "
+                            ) :
+                            (
+                                    "LEFT OUTER JOIN Nodes AS N1 ON ( Q.s = N1.id ) " +
+                                    "LEFT OUTER JOIN Nodes AS N2 ON ( Q.p = N2.id ) " +
+                                    "LEFT OUTER JOIN Nodes AS N3 ON ( Q.o = N3.id ) " +
+                                    "LEFT OUTER JOIN Nodes AS N4 ON ( Q.g = N4.id ) "
+                            )
+                    ) +
+                    "ORDER BY Q.g, Q.s, Q.p, Q.o",
+                    ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY
+            );
+            stmt.setFetchSize((int) Math.min(limit, FETCH_SIZE));
+
+            setParameters(stmt, after);
+
+            ResultSet rs = stmt.executeQuery();
+
+            try {
+                while (rs.next()) {
+                    Node subjectNode = buildNode(
+                            rs.getString("s_lex"),
+                            rs.getString("s_datatype"),
+                            rs.getString("s_lang"),
+                            ValueType.lookup(rs.getInt("s_type")));
+
+                    Node predicateNode = buildNode(
+                            rs.getString("p_lex"),
+                            rs.getString("p_datatype"),
+                            rs.getString("p_lang"),
+                            ValueType.lookup(rs.getInt("p_type")));
+
+                    Node objectNode = buildNode(
+                            rs.getString("o_lex"),
+                            rs.getString("o_datatype"),
+                            rs.getString("o_lang"),
+                            ValueType.lookup(rs.getInt("o_type")));
+
+                    Node graphNode = buildNode(
+                            rs.getString("g_lex"),
+                            rs.getString("g_datatype"),
+                            rs.getString("g_lang"),
+                            ValueType.lookup(rs.getInt("g_type")));
+
+                    send(quads, blankQuads, Quad.create(graphNode, subjectNode, predicateNode, objectNode));
+
+                    lastKey = new QuadKey(rs.getLong("g_key"), rs.getLong("s_key"), rs.getLong("p_key"), rs.getLong("o_key"));
+                }
+            } finally {
+                rs.close();
+                stmt.close();
+            }
+        } catch (SQLException sqle) {
+            throw new RuntimeException("Unable to retrieve triples", sqle);
+        }
+
+        return lastKey;
+    }
+
+    /**
+     * Read a page of keys from the Quads table, and resolve them to nodes through the node cache. Only nodes that are
+     * not in the cache are read from the Nodes table, rather than joining it to every row.
+     */
+    private QuadKey readPageKeys(StreamRDF quads, StreamRDF blankQuads, QuadKey after, long offset, long limit) {
+        List<QuadKey> keys = new ArrayList<>();
+
+        try {
+            PreparedStatement stmt = connection.prepareStatement(
+                    quadsQuery(after, offset, limit),
+                    ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY
+            );
+            stmt.setFetchSize((int) Math.min(limit, FETCH_SIZE));
+
+            setParameters(stmt, after);
+
+            ResultSet rs = stmt.executeQuery();
+
+            try {
+                while (rs.next()) {
+                    keys.add(new QuadKey(rs.getLong("g"), rs.getLong("s"), rs.getLong("p"), rs.getLong("o")));
+                }
+            } finally {
+                rs.close();
+                stmt.close();
+            }
+
+            // Nodes read for this page are kept here as well as in the cache, as the cache may be smaller than a page
+            Map<Long, Node> pageNodes = new HashMap<>();
+            Set<Long> missing = new LinkedHashSet<>();
+            for (QuadKey key : keys) {
+                findNode(key.g, pageNodes, missing);
+                findNode(key.s, pageNodes, missing);
+                findNode(key.p, pageNodes, missing);
+                findNode(key.o, pageNodes, missing);
+            }
+
+            if (!missing.isEmpty()) {
+                readNodes(missing, pageNodes);
+            }
+
+            for (QuadKey key : keys) {
+                Node subjectNode = pageNodes.get(key.s);
+                Node predicateNode = pageNodes.get(key.p);
+                Node objectNode = pageNodes.get(key.o);
+                Node graphNode = pageNodes.get(key.g);
+
+                send(quads, blankQuads, Quad.create(graphNode, subjectNode, predicateNode, objectNode));
+            }
+        } catch (SQLException sqle) {
+            throw new RuntimeException("Unable to retrieve triples", sqle);
+        }
+
+        return keys.isEmpty() ? null : keys.get(keys.size() - 1);
+    }
+
+    /**
+     * Send a quad that involves a blank node to <code>blankQuads</code> and any other to <code>quads</code>, timing
+     * them when page reads are recorded
+     */
+    private void send(StreamRDF quads, StreamRDF blankQuads, Quad quad) {
+        long started = pageReads == null ? 0 : System.nanoTime();
+        if (quad.getSubject().isBlank() || quad.getPredicate().isBlank() || quad.getObject().isBlank()) {
+            blankQuads.quad(quad);
+        } else {
+            quads.quad(quad);
+        }
+
+        pageRows++;
+        if (pageReads != null) {
+            sendNanos += System.nanoTime() - started;
+        }
+    }
+
+    private void findNode(long key, Map<Long, Node> pageNodes, Set<Long> missing) {
+        if (pageNodes.containsKey(key) || missing.contains(key)) {
+            return;
+        }
+
+        Node node = nodeCache.get(key);
+        if (node != null) {
+            pageNodes.put(key, node);
+        } else {
+            missing.add(key);
+        }
+    }
+
+    private void readNodes(Set<Long> keys, Map<Long, Node> pageNodes) throws SQLException {
+        String keyColumn = LayoutType.LayoutTripleNodesHash.equals(storeDesc.getLayout()) ? "hash" : "id";
+
+        List<Long> batch = new ArrayList<>(NODE_BATCH_SIZE);
+        Iterator<Long> iter = keys.iterator();
+        while (iter.hasNext()) {
+            batch.add(iter.next());
+            if (batch.size() < NODE_BATCH_SIZE && iter.hasNext()) {
+                continue;
+            }
+
+            StringBuilder sql = new StringBuilder("SELECT " + keyColumn + " AS node_key, lex, lang, datatype, type FROM Nodes WHERE " + keyColumn + " IN (");
+            for (int i = 0; i < batch.size(); i++) {
+                sql.append(i == 0 ? "?" : ",?");
+            }
+            sql.append(")");
+
+            PreparedStatement stmt = connection.prepareStatement(sql.toString());
+            try {
+                for (int i = 0; i < batch.size(); i++) {
+                    stmt.setLong(i + 1, batch.get(i));
+                }
+
+                ResultSet rs = stmt.executeQuery();
+                try {
+                    while (rs.next()) {
+                        long key = rs.getLong("node_key");
+                        Node node = buildNode(
+                                rs.getString("lex"),
+                                rs.getString("datatype"),
+                                rs.getString("lang"),
+                                ValueType.lookup(rs.getInt("type")));
+
+                        pageNodes.put(key, node);
+                        nodeCache.put(key, node);
+                    }
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                stmt.close();
+            }
+
+            batch.clear();
+        }
+
+        for (Long key : keys) {
+            if (!pageNodes.containsKey(key)) {
+                throw new RuntimeException("Quads refers to a node missing from Nodes: " + key);
+            }
+        }
+    }
+
+    /**
+     * Query for a page of rows from the Quads table, restricted to the partition if there is one
+     */
+    private String quadsQuery(QuadKey after, long offset, long limit) {
+        String where = "";
+        if (partition != null) {
+            where = partition.getCondition();
+        }
+        if (graphs != null) {
+            where = (where.isEmpty() ? "" : where + " AND ") + graphCondition(graphs);
+        }
+        if (after != null) {
+            where = (where.isEmpty() ? "" : where + " AND ") + "(g,s,p,o) > (?,?,?,?)";
+        }
+
+        return "SELECT g,s,p,o FROM Quads" +
+                (where.isEmpty() ? "" : " WHERE " + where) +
+                " ORDER BY g,s,p,o " +
+                (limit > 0 ? "LIMIT " + limit : "") +
+                (offset > 0 ? " OFFSET " + offset : "");
+    }
+
+    private void setParameters(PreparedStatement stmt, QuadKey after) throws SQLException {
+        int param = 1;
+        if (partition != null) {
+            param = partition.setParameters(stmt, param);
+        }
+        if (after != null) {
+            stmt.setLong(param++, after.g);
+            stmt.setLong(param++, after.s);
+            stmt.setLong(param++, after.p);
+            stmt.setLong(param, after.o);
+        }
+    }
+
+    private Node buildNode(String lex, String datatype, String lang, ValueType vType) {
+        if (interner != null) {
+            return interner.makeNode(lex, datatype, lang, vType);
+        }
+
+        return makeNode(lex, datatype, lang, vType);
+    }
+
+    // Copied from Jena SQLBridge2
+    static Node makeNode(String lex, String datatype, String lang, ValueType vType) {
+        switch(vType) {
+            case BNODE:
+                return NodeFactory.createBlankNode(lex);
+            case URI:
+                return NodeFactory.createURI(lex);
+            case STRING:
+                return NodeFactory.createLiteral(lex, lang);
+            case XSDSTRING:
+                return NodeFactory.createLiteral(lex, XSDDatatype.XSDstring);
+            case INTEGER:
+                return NodeFactory.createLiteral(lex, XSDDatatype.XSDinteger);
+            case DOUBLE:
+                return NodeFactory.createLiteral(lex, XSDDatatype.XSDdouble);
+            case DATETIME:
+                return NodeFactory.createLiteral(lex, XSDDatatype.XSDdateTime);
+            case OTHER:
+                RDFDatatype dt = TypeMapper.getInstance().getSafeTypeByName(datatype);
+                return NodeFactory.createLiteral(lex, dt);
+            default:
+                return NodeFactory.createLiteral("UNRECOGNIZED");
+        }
+    }
+
+    static final int FETCH_SIZE = 1000;
+    static final int NODE_BATCH_SIZE = 500;
+}
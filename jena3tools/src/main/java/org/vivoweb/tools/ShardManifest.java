@@ -0,0 +1,171 @@
+package org.vivoweb.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * List of the shards of a sharded dump, with the number of quads in each and the SHA-256 checksum of the file.
+ *
+ * Written as a text file alongside the shards, e.g. content.manifest for content-00000.nq.gz, with one line per
+ * shard holding the file name, quads and checksum separated by tabs. Lines starting with # are comments.
+ */
+public class ShardManifest {
+    private final File directory;
+    private final List<Shard> shards = new ArrayList<>();
+
+    public ShardManifest(File directory) {
+        this.directory = directory;
+    }
+
+    public static class Shard {
+        public final String name;
+        public final long quads;
+        public final String checksum;
+
+        public Shard(String name, long quads, String checksum) {
+            this.name = name;
+            this.quads = quads;
+            this.checksum = checksum;
+        }
+    }
+
+    /**
+     * Manifest file for the shards of <code>dump</code>, e.g. content.manifest for content.nq.gz
+     */
+    public static File fileFor(File dump) {
+        String name = dump.getName();
+        int dot = name.indexOf('.');
+        return new File(dump.getAbsoluteFile().getParentFile(), (dot < 0 ? name : name.substring(0, dot)) + EXTENSION);
+    }
+
+    public static boolean isManifest(File file) {
+        return file.getName().endsWith(EXTENSION);
+    }
+
+    public void add(Shard shard) {
+        shards.add(shard);
+    }
+
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    public List<File> getFiles() {
+        List<File> files = new ArrayList<>();
+        for (Shard shard : shards) {
+            files.add(new File(directory, shard.name));
+        }
+        return files;
+    }
+
+    public long getQuads() {
+        long quads = 0;
+        for (Shard shard : shards) {
+            quads += shard.quads;
+        }
+        return quads;
+    }
+
+    /**
+     * Check that every shard is present and has the checksum recorded for it, before any of them are loaded
+     */
+    public void verify() throws IOException {
+        for (Shard shard : shards) {
+            File file = new File(directory, shard.name);
+            if (!file.exists()) {
+                throw new FileNotFoundException(file.getAbsolutePath());
+            }
+
+            MessageDigest digest = newDigest();
+            InputStream inputStream = new FileInputStream(file);
+            try {
+                byte[] buffer = new byte[65536];
+                int read;
+                while ((read = inputStream.read(buffer)) >= 0) {
+                    digest.update(buffer, 0, read);
+                }
+            } finally {
+                inputStream.close();
+            }
+
+            if (!shard.checksum.equals(toHex(digest.digest()))) {
+                throw new IOException("Checksum does not match manifest for " + file.getAbsolutePath());
+            }
+        }
+    }
+
+    public static ShardManifest read(File file) throws IOException {
+        ShardManifest manifest = new ShardManifest(file.getAbsoluteFile().getParentFile());
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] fields = line.split("\t");
+                if (fields.length != 3) {
+                    throw new IOException("Invalid manifest line: " + line);
+                }
+
+                try {
+                    manifest.add(new Shard(fields[0], Long.parseLong(fields[1]), fields[2]));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid manifest line: " + line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        return manifest;
+    }
+
+    public void write(File file) throws IOException {
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(Utils.openOutput(file), StandardCharsets.UTF_8));
+        try {
+            writer.println("# file\tquads\tsha256");
+            for (Shard shard : shards) {
+                writer.println(shard.name + "\t" + shard.quads + "\t" + shard.checksum);
+            }
+        } finally {
+            writer.close();
+        }
+
+        if (writer.checkError()) {
+            throw new IOException("Unable to write manifest " + file.getAbsolutePath());
+        }
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    public static final String EXTENSION = ".manifest";
+}
@@ -0,0 +1,247 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sparql.core.Quad;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+
+/**
+ * Writes a stream of quads to numbered shards alongside <code>output</code>, e.g. content-00000.nq.gz for
+ * content.nq.gz, starting a new shard after every <code>maxQuads</code> quads or <code>maxBytes</code> bytes of
+ * uncompressed output, whichever comes first. Either limit may be 0 for none.
+ *
+ * Each shard is a complete document, so the format must be one whose blank node labels are the same in every
+ * document, such as N-Quads. When the stream is finished, a manifest of the shards is written.
+ */
+public class ShardWriter extends StreamRDFBase {
+    private final File output;
+    private final RDFFormat format;
+    private final long maxQuads;
+    private final long maxBytes;
+
+    private final ShardManifest manifest;
+    private Progress progress;
+
+    private File file;
+    private MessageDigest digest;
+    private FileOutputStream fileStream;
+    private CompressingOutputStream compressingStream;
+    private CountingOutputStream outputStream;
+    private StreamRDF stream;
+    private long quads;
+
+    public ShardWriter(File output, RDFFormat format, long maxQuads, long maxBytes) {
+        this.output = output;
+        this.format = format;
+        this.maxQuads = maxQuads;
+        this.maxBytes = maxBytes;
+        this.manifest = new ShardManifest(output.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Count the bytes written to the shards, may be null
+     */
+    public void setProgress(Progress progress) {
+        this.progress = progress;
+    }
+
+    @Override
+    public void triple(Triple triple) {
+        quad(Quad.create(Quad.defaultGraphNodeGenerated, triple));
+    }
+
+    @Override
+    public void quad(Quad quad) {
+        if (stream == null) {
+            open(false);
+        }
+
+        stream.quad(quad);
+        quads++;
+
+        if ((maxQuads > 0 && quads >= maxQuads) || (maxBytes > 0 && outputStream.count >= maxBytes)) {
+            closeShard();
+        }
+    }
+
+    /**
+     * Close the last shard and write the manifest
+     */
+    @Override
+    public void finish() {
+        if (stream != null) {
+            closeShard();
+        }
+
+        try {
+            manifest.write(ShardManifest.fileFor(output));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write content dump manifest", e);
+        }
+    }
+
+    /**
+     * Close the current shard without recording it, after a failure
+     */
+    public void close() {
+        if (outputStream != null) {
+            try {
+                outputStream.close();
+            } catch (IOException e) {
+                // Already failing
+            }
+            outputStream = null;
+            stream = null;
+        }
+    }
+
+    /**
+     * Pass everything written so far through to the current shard, and record how far the shards have got.
+     *
+     * @param key key of the last quad written
+     */
+    public ExportCheckpoint checkpoint(QuadKey key) {
+        ExportCheckpoint checkpoint = new ExportCheckpoint();
+        checkpoint.key = key;
+        checkpoint.shard = manifest.getShards().size();
+        checkpoint.completed.addAll(manifest.getShards());
+
+        if (stream != null) {
+            // Ending the document flushes the writer. For formats that can be sharded, a document can
+            // simply be followed by another in the same file
+            stream.finish();
+            try {
+                outputStream.flush();
+                if (compressingStream != null) {
+                    compressingStream.sync();
+                }
+                checkpoint.offset = fileStream.getChannel().position();
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to write content dump", e);
+            }
+            checkpoint.quads = quads;
+            checkpoint.bytes = outputStream.count;
+
+            stream = Utils.openWriterStream(outputStream, format);
+            stream.start();
+        }
+
+        return checkpoint;
+    }
+
+    /**
+     * Continue from a checkpoint, discarding anything written to the current shard after it
+     */
+    public void resume(ExportCheckpoint checkpoint) {
+        for (ShardManifest.Shard shard : checkpoint.completed) {
+            manifest.add(shard);
+        }
+
+        if (checkpoint.offset > 0) {
+            File current = Utils.numberedFile(output, manifest.getShards().size());
+            try {
+                RandomAccessFile existing = new RandomAccessFile(current, "rw");
+                try {
+                    if (existing.length() < checkpoint.offset) {
+                        throw new IOException("Shard is shorter than the checkpoint " + current.getAbsolutePath());
+                    }
+                    existing.setLength(checkpoint.offset);
+                } finally {
+                    existing.close();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to resume content dump", e);
+            }
+
+            open(true);
+            quads = checkpoint.quads;
+            outputStream.count = checkpoint.bytes;
+        }
+    }
+
+    /**
+     * @param append continue the current shard, which is read first to bring the checksum up to date
+     */
+    private void open(boolean append) {
+        file = Utils.numberedFile(output, manifest.getShards().size());
+        digest = ShardManifest.newDigest();
+
+        try {
+            if (append) {
+                InputStream existing = new FileInputStream(file);
+                try {
+                    byte[] buffer = new byte[65536];
+                    int read;
+                    while ((read = existing.read(buffer)) >= 0) {
+                        digest.update(buffer, 0, read);
+                    }
+                } finally {
+                    existing.close();
+                }
+            }
+
+            fileStream = new FileOutputStream(file, append);
+
+            OutputStream out = new DigestOutputStream(progress == null ? fileStream : progress.count(fileStream), digest);
+            if (Utils.isCompressed(file)) {
+                compressingStream = new CompressingOutputStream(out);
+                out = compressingStream;
+            } else {
+                compressingStream = null;
+            }
+            outputStream = new CountingOutputStream(new BufferedOutputStream(out));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write content dump (dir error)");
+        }
+
+        stream = Utils.openWriterStream(outputStream, format);
+        stream.start();
+        quads = 0;
+    }
+
+    private void closeShard() {
+        stream.finish();
+        try {
+            outputStream.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write content dump", e);
+        }
+
+        manifest.add(new ShardManifest.Shard(file.getName(), quads, ShardManifest.toHex(digest.digest())));
+        outputStream = null;
+        stream = null;
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
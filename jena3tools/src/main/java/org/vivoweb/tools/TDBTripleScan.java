@@ -0,0 +1,107 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.atlas.lib.tuple.Tuple;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.tdb.store.DatasetGraphTDB;
+import org.apache.jena.tdb.store.NodeId;
+import org.apache.jena.tdb.store.nodetable.NodeTable;
+import org.apache.jena.tdb.store.nodetupletable.NodeTupleTable;
+import org.apache.jena.tdb.store.tupletable.TupleIndex;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Sends the distinct triples of the named graphs of a TDB dataset, the same triples as its union model, by scanning
+ * the SPOG quad index.
+ *
+ * The index is ordered by subject, predicate and object before graph, so the copies of a triple that is in several
+ * graphs are consecutive entries, and are dropped by comparing each entry with the one before. Nothing is held in
+ * memory but the previous entry, and nodes are only looked up for the triples that are sent.
+ *
+ * The scan can be limited to some of the graphs. Entries of other graphs are passed over without looking up their
+ * nodes, and as all of the copies of a triple are still consecutive, the triple is sent once if it is in any of them.
+ */
+public class TDBTripleScan {
+    private final DatasetGraphTDB dataset;
+    private List<Node> graphs;
+
+    public TDBTripleScan(DatasetGraphTDB dataset) {
+        this.dataset = dataset;
+    }
+
+    /**
+     * Send only the triples of these graphs, or of all named graphs if null
+     */
+    public void setGraphs(List<Node> graphs) {
+        this.graphs = graphs;
+    }
+
+    /**
+     * @return the number of triples sent
+     */
+    public long send(StreamRDF destination) {
+        NodeTupleTable quads = dataset.getQuadTable().getNodeTupleTable();
+        NodeTable nodes = quads.getNodeTable();
+
+        TupleIndex index = findIndex(quads, SPOG);
+        if (index == null) {
+            throw new RuntimeException("Unable to find the " + SPOG + " index of the TDB store");
+        }
+
+        Set<NodeId> graphIds = null;
+        if (graphs != null) {
+            graphIds = new HashSet<>();
+            for (Node graph : graphs) {
+                NodeId graphId = nodes.getNodeIdForNode(graph);
+                if (!NodeId.isDoesNotExist(graphId)) {
+                    graphIds.add(graphId);
+                }
+            }
+        }
+
+        long sent = 0;
+        Tuple<NodeId> previous = null;
+        Iterator<Tuple<NodeId>> entries = index.all();
+        while (entries.hasNext()) {
+            // Entries are in G, S, P, O order, whatever order the index keeps them in
+            Tuple<NodeId> entry = entries.next();
+            if (graphIds != null && !graphIds.contains(entry.get(0))) {
+                continue;
+            }
+            if (previous != null && sameTriple(previous, entry)) {
+                continue;
+            }
+
+            Node subject = nodes.getNodeForNodeId(entry.get(1));
+            Node predicate = nodes.getNodeForNodeId(entry.get(2));
+            Node object = nodes.getNodeForNodeId(entry.get(3));
+            destination.triple(new Triple(subject, predicate, object));
+
+            previous = entry;
+            sent++;
+        }
+
+        return sent;
+    }
+
+    private static boolean sameTriple(Tuple<NodeId> a, Tuple<NodeId> b) {
+        return a.get(1).equals(b.get(1)) && a.get(2).equals(b.get(2)) && a.get(3).equals(b.get(3));
+    }
+
+    private static TupleIndex findIndex(NodeTupleTable table, String name) {
+        for (TupleIndex index : table.getTupleTable().getIndexes()) {
+            if (name.equalsIgnoreCase(index.getName())) {
+                return index;
+            }
+        }
+
+        return null;
+    }
+
+    private static final String SPOG = "SPOG";
+}
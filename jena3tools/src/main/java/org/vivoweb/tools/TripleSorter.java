@@ -0,0 +1,76 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.tokens.Tokenizer;
+import org.apache.jena.riot.tokens.TokenizerFactory;
+import org.apache.jena.sparql.core.Quad;
+
+import java.io.File;
+
+/**
+ * Collects triples, dropping the graph of quads, and replays each distinct triple once, keeping at most
+ * <code>threshold</code> of them in memory.
+ *
+ * Each triple is held as its N-Triples line, as written by {@link NodeFormat}, in a {@link LineSorter}, which writes
+ * sorted runs to temporary files and merges them without duplicates. Triples are replayed in the order of their
+ * lines, which keeps the triples of a subject together.
+ */
+public class TripleSorter implements StreamRDF, AutoCloseable {
+    private final LineSorter lines;
+
+    public TripleSorter(File directory, long threshold) {
+        this.lines = new LineSorter(directory, "triples-", threshold);
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void triple(Triple triple) {
+        lines.add(NodeFormat.str(triple.getSubject()) + " " + NodeFormat.str(triple.getPredicate()) + " " +
+                NodeFormat.str(triple.getObject()));
+    }
+
+    @Override
+    public void quad(Quad quad) {
+        triple(quad.asTriple());
+    }
+
+    @Override
+    public void base(String base) {
+    }
+
+    @Override
+    public void prefix(String prefix, String iri) {
+    }
+
+    @Override
+    public void finish() {
+    }
+
+    /**
+     * Send each distinct triple to <code>destination</code>. Only the triples are sent - it is up to the caller to
+     * start and finish the destination.
+     *
+     * @return the number of distinct triples
+     */
+    public long replay(StreamRDF destination) {
+        return lines.merge(line -> destination.triple(parse(line)));
+    }
+
+    @Override
+    public void close() {
+        lines.close();
+    }
+
+    private static Triple parse(String line) {
+        Tokenizer tokenizer = TokenizerFactory.makeTokenizerString(line);
+        Node subject = NodeFormat.asNode(tokenizer.next());
+        Node predicate = NodeFormat.asNode(tokenizer.next());
+        Node object = NodeFormat.asNode(tokenizer.next());
+        return new Triple(subject, predicate, object);
+    }
+}
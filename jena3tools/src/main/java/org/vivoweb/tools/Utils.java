@@ -1,9 +1,228 @@
 package org.vivoweb.tools;
 
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.apache.jena.riot.tokens.Token;
+import org.apache.jena.riot.tokens.TokenType;
+import org.apache.jena.riot.tokens.Tokenizer;
+import org.apache.jena.riot.tokens.TokenizerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 public class Utils {
     public static  File resolveFile(String baseDir, String filePath) {
         return new File(baseDir).toPath().resolve(filePath).toFile();
     }
+
+    /**
+     * Numbered file alongside <code>file</code>, e.g. content-00001.nq for content.nq
+     */
+    public static File numberedFile(File file, int number) {
+        return numberedFile(file, String.format("%05d", number));
+    }
+
+    /**
+     * File alongside <code>file</code>, with a suffix added to the name before the extension,
+     * e.g. content-blank.nq for content.nq
+     */
+    public static File numberedFile(File file, String suffix) {
+        String name = file.getName();
+        int dot = name.indexOf('.');
+        if (dot < 0) {
+            return new File(file.getParentFile(), name + "-" + suffix);
+        }
+
+        return new File(file.getParentFile(), name.substring(0, dot) + "-" + suffix + name.substring(dot));
+    }
+
+    /**
+     * Whether a file is gzip compressed, judged by its name
+     */
+    public static boolean isCompressed(File file) {
+        return file.getName().endsWith(GZIP_EXTENSION);
+    }
+
+    /**
+     * Buffered stream for writing a file, compressed on a separate thread if the name ends in .gz
+     */
+    public static OutputStream openOutput(File file) throws FileNotFoundException {
+        return openOutput(file, null);
+    }
+
+    /**
+     * @param progress counts the bytes written to the file, after compression, may be null
+     */
+    public static OutputStream openOutput(File file, Progress progress) throws FileNotFoundException {
+        OutputStream outputStream = new FileOutputStream(file, false);
+        if (progress != null) {
+            outputStream = progress.count(outputStream);
+        }
+        if (isCompressed(file)) {
+            outputStream = new CompressingOutputStream(outputStream);
+        }
+
+        return new BufferedOutputStream(outputStream);
+    }
+
+    /**
+     * Writer for a format that RIOT can stream. For RDF Thrift, a prefix is declared for each namespace, so that
+     * IRIs are written as a prefix name and the rest of the IRI
+     */
+    public static StreamRDF openWriterStream(OutputStream outputStream, RDFFormat format) {
+        StreamRDF stream = StreamRDFWriter.getWriterStream(outputStream, format);
+        if (RDFFormat.RDF_THRIFT.equals(format)) {
+            stream = new NamespacePrefixer(stream);
+        }
+        return stream;
+    }
+
+    /**
+     * Buffered stream for reading a file, decompressed if the name ends in .gz
+     */
+    public static InputStream openInput(File file) throws IOException {
+        return openInput(file, null);
+    }
+
+    /**
+     * @param progress counts the bytes read from the file, before decompression, may be null
+     */
+    public static InputStream openInput(File file, Progress progress) throws IOException {
+        InputStream inputStream = new FileInputStream(file);
+        if (progress != null) {
+            inputStream = progress.count(inputStream);
+        }
+        if (isCompressed(file)) {
+            try {
+                return new BufferedInputStream(new GZIPInputStream(inputStream, 65536));
+            } catch (IOException e) {
+                inputStream.close();
+                throw e;
+            }
+        }
+
+        return new BufferedInputStream(inputStream);
+    }
+
+    /**
+     * Stream reading each of the files in turn, as if they were one. Each file is only opened when it is reached.
+     */
+    public static InputStream openInputs(List<File> files) {
+        return openInputs(files, null);
+    }
+
+    /**
+     * @param progress counts the bytes read from the files, before decompression, may be null
+     */
+    public static InputStream openInputs(final List<File> files, final Progress progress) {
+        final Iterator<File> iterator = files.iterator();
+        return new SequenceInputStream(new Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                try {
+                    return openInput(iterator.next(), progress);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Language of an RDF file, from its extension if it has a known one, otherwise from its first statement.
+     * Defaults to TriG.
+     */
+    public static Lang detectLang(File file) throws IOException {
+        Lang lang = RDFLanguages.filenameToLang(file.getName());
+        if (lang != null) {
+            return lang;
+        }
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(openInput(file), StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                return detectLang(line);
+            }
+        } finally {
+            reader.close();
+        }
+
+        return Lang.TRIG;
+    }
+
+    private static Lang detectLang(String line) {
+        if (line.startsWith("{") || line.startsWith("[")) {
+            return Lang.JSONLD;
+        }
+
+        if (line.startsWith("<?xml") || line.startsWith("<rdf:RDF")) {
+            return Lang.RDFXML;
+        }
+
+        // A line of N-Triples or N-Quads is three or four terms and a dot. Anything else is read as TriG,
+        // which also covers Turtle
+        int terms = 0;
+        Tokenizer tokenizer = TokenizerFactory.makeTokenizerString(line);
+        try {
+            while (tokenizer.hasNext()) {
+                Token token = tokenizer.next();
+                if (token.getType() == TokenType.DOT) {
+                    return terms == 3 && !tokenizer.hasNext() ? Lang.NTRIPLES :
+                           terms == 4 && !tokenizer.hasNext() ? Lang.NQUADS : Lang.TRIG;
+                }
+
+                if (!token.isIRI() && !token.isBNode() && !token.hasType(TokenType.LITERAL_DT) &&
+                        !token.hasType(TokenType.LITERAL_LANG) && !token.hasType(TokenType.STRING)) {
+                    return Lang.TRIG;
+                }
+                terms++;
+            }
+        } catch (RiotException e) {
+            // Not a line of terms
+        } finally {
+            tokenizer.close();
+        }
+
+        return Lang.TRIG;
+    }
+
+    /**
+     * Whether each line of the language is a complete statement
+     */
+    public static boolean isLineBased(Lang lang) {
+        return RDFLanguages.sameLang(lang, Lang.NTRIPLES) || RDFLanguages.sameLang(lang, Lang.NQUADS);
+    }
+
+    public static final String GZIP_EXTENSION = ".gz";
 }
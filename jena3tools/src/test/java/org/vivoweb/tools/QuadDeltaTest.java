@@ -0,0 +1,168 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Quad;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class QuadDeltaTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Node graph = NodeFactory.createURI("http://example.org/g");
+    private final Node predicate = NodeFactory.createURI("http://example.org/p");
+
+    @Test
+    public void patchesBringACopyUpToDate() throws Exception {
+        DatasetGraph store = DatasetGraphFactory.create();
+        for (int i = 0; i < 10; i++) {
+            store.add(quad(i));
+        }
+        store.add(Quad.defaultGraphIRI, NodeFactory.createURI("http://example.org/d"), predicate,
+                NodeFactory.createLiteral("default"));
+
+        File snapshot = new File(folder.getRoot(), "content" + QuadDelta.SNAPSHOT_EXTENSION);
+        File first = new File(folder.getRoot(), "content-0" + QuadDelta.PATCH_EXTENSION);
+        assertEquals(11, export(store, snapshot, first));
+
+        // A copy of the store as it was at the first export, such as one loaded by --migrate
+        DatasetGraph copy = DatasetGraphFactory.create();
+        copy(store, copy);
+
+        List<File> patches = new ArrayList<>();
+        for (int round = 1; round <= 3; round++) {
+            store.delete(quad(round));
+            store.add(quad(10 + round));
+            store.add(new Quad(graph, NodeFactory.createURI("http://example.org/s" + round), predicate,
+                    NodeFactory.createLiteral("added in round " + round, "en")));
+            if (round == 2) {
+                store.deleteAny(Quad.defaultGraphIRI, Node.ANY, Node.ANY, Node.ANY);
+            }
+
+            // Compressed or not
+            File patch = new File(folder.getRoot(), "content-" + round + QuadDelta.PATCH_EXTENSION +
+                    (round == 3 ? Utils.GZIP_EXTENSION : ""));
+            export(store, snapshot, patch);
+            patches.add(patch);
+        }
+
+        String lastId = null;
+        for (File file : patches) {
+            PatchReader patch = new PatchReader(file);
+            if (lastId != null) {
+                assertEquals(lastId, patch.getPrevious());
+            }
+
+            patch.apply(new PatchReader.Changes() {
+                @Override
+                public void add(Quad quad) {
+                    copy.add(quad);
+                }
+
+                @Override
+                public void delete(Quad quad) {
+                    copy.delete(quad);
+                }
+            });
+            lastId = patch.getId();
+        }
+
+        assertEquals(quads(store), quads(copy));
+    }
+
+    @Test
+    public void removalsAreWrittenBeforeAdditions() throws Exception {
+        DatasetGraph store = DatasetGraphFactory.create();
+        for (int i = 0; i < 6; i += 2) {
+            store.add(quad(i));
+        }
+
+        File snapshot = new File(folder.getRoot(), "content" + QuadDelta.SNAPSHOT_EXTENSION);
+        File patch = new File(folder.getRoot(), "content-1" + QuadDelta.PATCH_EXTENSION);
+        export(store, snapshot, new File(folder.getRoot(), "content-0" + QuadDelta.PATCH_EXTENSION));
+
+        // Changes that sort in between each other
+        store.clear();
+        for (int i = 1; i < 6; i += 2) {
+            store.add(quad(i));
+        }
+        export(store, snapshot, patch);
+
+        final List<String> rows = new ArrayList<>();
+        new PatchReader(patch).apply(new PatchReader.Changes() {
+            @Override
+            public void add(Quad quad) {
+                rows.add("A");
+            }
+
+            @Override
+            public void delete(Quad quad) {
+                rows.add("D");
+            }
+        });
+
+        assertEquals("[D, D, D, A, A, A]", rows.toString());
+        assertFalse(new File(folder.getRoot(), "next-" + patch.getName()).exists());
+    }
+
+    @Test
+    public void firstExportWritesOnlyASnapshot() throws Exception {
+        DatasetGraph store = DatasetGraphFactory.create();
+        store.add(quad(0));
+
+        File snapshot = new File(folder.getRoot(), "content" + QuadDelta.SNAPSHOT_EXTENSION);
+        File patch = new File(folder.getRoot(), "content-0" + QuadDelta.PATCH_EXTENSION);
+        assertEquals(1, export(store, snapshot, patch));
+        assertFalse(patch.exists());
+        assertEquals(0, folder.getRoot().list((dir, name) -> name.startsWith("next-")).length);
+    }
+
+    /**
+     * A quad with a blank node and an IRI that N-Triples doesn't allow, as a store may hold
+     */
+    private Quad quad(int i) {
+        return new Quad(graph, NodeFactory.createBlankNode("a" + i + "p0"), predicate,
+                NodeFactory.createURI("http://example.org/object " + i));
+    }
+
+    private long export(DatasetGraph store, File snapshot, File patch) throws Exception {
+        // A threshold of 2 spills the quads to several sorted runs
+        try (QuadDelta delta = new QuadDelta(folder.getRoot(), 2)) {
+            Iterator<Quad> quads = store.find();
+            while (quads.hasNext()) {
+                delta.quad(quads.next());
+            }
+            return delta.write(snapshot, patch);
+        }
+    }
+
+    private static void copy(DatasetGraph from, DatasetGraph to) {
+        Iterator<Quad> quads = from.find();
+        while (quads.hasNext()) {
+            to.add(quads.next());
+        }
+    }
+
+    private static Set<Quad> quads(DatasetGraph store) {
+        Set<Quad> quads = new HashSet<>();
+        Iterator<Quad> found = store.find();
+        while (found.hasNext()) {
+            quads.add(found.next());
+        }
+        return quads;
+    }
+}
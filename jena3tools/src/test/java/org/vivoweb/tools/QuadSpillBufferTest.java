@@ -0,0 +1,52 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sparql.core.Quad;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QuadSpillBufferTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replaysSpilledQuadsInOrder() throws Exception {
+        Node graph = NodeFactory.createURI("http://example.org/g");
+        Node predicate = NodeFactory.createURI("http://example.org/p");
+
+        List<Quad> added = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            added.add(new Quad(graph, NodeFactory.createBlankNode("a" + i + "p0"), predicate,
+                    NodeFactory.createURI("http://example.org/a b" + i)));
+        }
+        added.add(Quad.create(Quad.defaultGraphNodeGenerated, NodeFactory.createBlankNode("x:y z"), predicate,
+                NodeFactory.createLiteral("v", "en")));
+
+        try (QuadSpillBuffer buffer = new QuadSpillBuffer(folder.getRoot(), 2)) {
+            for (Quad quad : added) {
+                buffer.quad(quad);
+            }
+            assertEquals(added.size(), buffer.size());
+
+            final List<Quad> replayed = new ArrayList<>();
+            buffer.replay(new StreamRDFBase() {
+                @Override
+                public void quad(Quad quad) {
+                    replayed.add(quad);
+                }
+            });
+
+            assertEquals(added, replayed);
+            assertTrue(replayed.get(replayed.size() - 1).isDefaultGraph());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sparql.core.Quad;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generated VIVO shaped content for the benchmarks. The same count always gives the same quads, so that runs can be
+ * compared.
+ */
+public class BenchmarkData {
+    public static List<Quad> quads(int count) {
+        final List<Quad> quads = new ArrayList<>(count);
+        new DatasetGenerator(count, DatasetGenerator.DEFAULT_SEED).generateContent(new StreamRDFBase() {
+            @Override
+            public void triple(Triple triple) {
+                quads.add(Quad.create(Quad.defaultGraphNodeGenerated, triple));
+            }
+
+            @Override
+            public void quad(Quad quad) {
+                quads.add(quad);
+            }
+        });
+        return quads;
+    }
+}
@@ -0,0 +1,70 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sdb.layout2.ValueType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building a node from a row of the SDB Nodes table, for each value type
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MakeNodeBenchmark {
+    @Param({ "BNODE", "URI", "STRING", "XSDSTRING", "INTEGER", "DOUBLE", "DATETIME", "OTHER" })
+    public String valueType;
+
+    private ValueType type;
+    private String lex;
+    private String datatype;
+    private String lang;
+
+    @Setup
+    public void setup() {
+        type = ValueType.valueOf(valueType);
+        datatype = "";
+        lang = "";
+
+        switch (type) {
+            case BNODE:
+                lex = "b0123456789abcdef";
+                break;
+            case URI:
+                lex = "http://vivo.example.org/individual/n1234567";
+                break;
+            case STRING:
+                lex = "Person 1234567";
+                lang = "en-US";
+                break;
+            case XSDSTRING:
+                lex = "Overview of person 1234567";
+                break;
+            case INTEGER:
+                lex = "1234567";
+                break;
+            case DOUBLE:
+                lex = "0.1234567";
+                break;
+            case DATETIME:
+                lex = "2017-06-15T12:00:00";
+                break;
+            default:
+                lex = "1987";
+                datatype = "http://www.w3.org/2001/XMLSchema#gYear";
+                break;
+        }
+    }
+
+    @Benchmark
+    public Node makeNode() {
+        return SDBQuadReader.makeNode(lex, datatype, lang, type);
+    }
+}
@@ -0,0 +1,100 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sdb.SDBFactory;
+import org.apache.jena.sdb.Store;
+import org.apache.jena.sdb.StoreDesc;
+import org.apache.jena.sdb.store.DatabaseType;
+import org.apache.jena.sdb.store.LayoutType;
+import org.apache.jena.sparql.core.Quad;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/**
+ * Reading the whole Quads table of an SDB store a page at a time, as an SDB export does, from an embedded H2
+ * database loaded with a generated dataset.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class SDBPageBenchmark {
+    @Param({ "100000" })
+    public int quads;
+
+    @Param({ "10000" })
+    public long pageSize;
+
+    @Param({ "true", "false" })
+    public boolean keysetPaging;
+
+    @Param({ "0", "100000" })
+    public int nodeCacheSize;
+
+    @Param({ "layout2/hash", "layout2/index" })
+    public String layout;
+
+    private Connection connection;
+    private StoreDesc storeDesc;
+
+    @Setup
+    public void load() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:sdb;DB_CLOSE_DELAY=-1", "sa", "");
+        storeDesc = new StoreDesc(LayoutType.fetch(layout), DatabaseType.H2);
+
+        Store store = SDBFactory.connectStore(connection, storeDesc);
+        store.getTableFormatter().create();
+
+        try (SDBQuadLoader loader = new SDBQuadLoader(store, ApplicationStores.DEFAULT_BATCH_SIZE)) {
+            loader.start();
+            for (Quad quad : BenchmarkData.quads(quads)) {
+                loader.quad(quad);
+            }
+            loader.finish();
+        }
+    }
+
+    @TearDown
+    public void close() throws SQLException {
+        connection.createStatement().execute("DROP ALL OBJECTS");
+        connection.close();
+    }
+
+    @Benchmark
+    public void readPages(Blackhole blackhole) {
+        SDBQuadReader reader = new SDBQuadReader(connection, storeDesc, pageSize, keysetPaging);
+        if (nodeCacheSize > 0) {
+            reader.setNodeCache(new SDBNodeCache(nodeCacheSize));
+        }
+
+        StreamRDF sink = new StreamRDFBase() {
+            @Override
+            public void triple(Triple triple) {
+                blackhole.consume(triple);
+            }
+
+            @Override
+            public void quad(Quad quad) {
+                blackhole.consume(quad);
+            }
+        };
+        reader.read(sink, sink, null);
+    }
+}
@@ -0,0 +1,91 @@
+package org.vivoweb.tools;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.sparql.core.Quad;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+/**
+ * Writing a page of the Quads table as TriG, N-Quads or RDF Thrift, as each page of an SDB export is written. RDF
+ * Thrift is streamed through the namespace prefixer, as it is for a dump.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SerializationBenchmark {
+    @Param({ "trig", "nq", "rt" })
+    public String format;
+
+    @Param({ "10000" })
+    public int pageSize;
+
+    private RDFFormat outputFormat;
+    private Dataset page;
+
+    @Setup
+    public void setup() {
+        if ("trig".equals(format)) {
+            outputFormat = RDFFormat.TRIG_BLOCKS;
+        } else if ("rt".equals(format)) {
+            outputFormat = RDFFormat.RDF_THRIFT;
+        } else {
+            outputFormat = RDFFormat.NQUADS;
+        }
+
+        page = DatasetFactory.create();
+        for (Quad quad : BenchmarkData.quads(pageSize)) {
+            page.asDatasetGraph().add(quad);
+        }
+    }
+
+    @Benchmark
+    public void writePage(Blackhole blackhole) {
+        if (RDFFormat.RDF_THRIFT.equals(outputFormat)) {
+            StreamRDF stream = Utils.openWriterStream(new BlackholeOutputStream(blackhole), outputFormat);
+            stream.start();
+            for (Iterator<Quad> quads = page.asDatasetGraph().find(); quads.hasNext(); ) {
+                stream.quad(quads.next());
+            }
+            stream.finish();
+        } else {
+            RDFDataMgr.write(new BlackholeOutputStream(blackhole), page, outputFormat);
+        }
+    }
+
+    /**
+     * Counts the bytes written rather than keeping them, so that the benchmark measures the writer alone
+     */
+    private static class BlackholeOutputStream extends OutputStream {
+        private final Blackhole blackhole;
+
+        BlackholeOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            blackhole.consume(len);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.vivoweb.tools;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.tdb.TDB;
+import org.apache.jena.tdb.TDBFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+/**
+ * Reading an N-Quads dump into an empty TDB store, as a content import does when the bulk loader can't be used
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class TDBLoadBenchmark {
+    @Param({ "100000" })
+    public int quads;
+
+    private File directory;
+    private File dump;
+    private File store;
+    private Dataset dataset;
+
+    @Setup(Level.Trial)
+    public void writeDump() throws IOException {
+        directory = Files.createTempDirectory("tdb-benchmark").toFile();
+        dump = new File(directory, "content.nq");
+
+        OutputStream outputStream = Utils.openOutput(dump);
+        try {
+            StreamRDF stream = StreamRDFWriter.getWriterStream(outputStream, RDFFormat.NQUADS);
+            stream.start();
+            for (Quad quad : BenchmarkData.quads(quads)) {
+                stream.quad(quad);
+            }
+            stream.finish();
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void createStore() throws IOException {
+        store = new File(directory, "tdb");
+        FileUtils.deleteDirectory(store);
+        dataset = TDBFactory.createDataset(store.getAbsolutePath());
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeStore() {
+        dataset.close();
+        TDBFactory.release(dataset);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDump() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public void read() {
+        RDFDataMgr.read(dataset, dump.getAbsolutePath());
+        TDB.sync(dataset);
+    }
+}